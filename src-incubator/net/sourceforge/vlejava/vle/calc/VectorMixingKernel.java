@@ -0,0 +1,57 @@
+/*
+ * Kernel for the sums of the mixing rules using the Java Vector API.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernel for the sums of the mixing rules using the Java Vector API. The
+ * products are computed a vector at a time, and then added one by one in
+ * the order of the index, as in the scalar kernel, so that the results
+ * are the same as those of the scalar kernel to the last bit. Short
+ * vectors, as in binary systems, are summed by the scalar loop.
+ * <p>
+ * Compile with --add-modules jdk.incubator.vector, and start the
+ * application with the same option to use it.
+ */
+public class VectorMixingKernel extends MixingKernel
+{
+    private final static VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    public String getName()
+    {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    public double dot(double[] a, int offset, double[] b, int n)
+    {
+        int i = 0;
+        int j = 0;
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(n);
+        double sum = 0;
+        DoubleVector products = null;
+
+        for (; i < bound; i += lanes)
+        {
+            products = DoubleVector.fromArray(SPECIES, a, offset + i)
+                .mul(DoubleVector.fromArray(SPECIES, b, i));
+
+            // Adding the lanes in order keeps the rounding of the scalar sum
+            for (j = 0; j < lanes; j++)
+                sum += products.lane(j);
+        }
+
+        for (; i < n; i++)
+            sum += a[offset + i] * b[i];
+
+        return sum;
+    }
+}
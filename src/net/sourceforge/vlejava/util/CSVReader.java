@@ -0,0 +1,346 @@
+/*
+ * Streaming reader of comma separated values.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.util;
+
+import java.io.*;
+import java.util.HashMap;
+
+/**
+ * This class reads comma separated values row by row, in a single pass
+ * over the input. The first row gives the names of the columns, which
+ * are looked up once with getColumn. The fields of the current row are
+ * then read by column index, as strings or directly as numbers. Fields
+ * may be quoted with double quotes, and a double quote inside a quoted
+ * field is written as two. Unquoted fields are trimmed, and blank lines
+ * are skipped.
+ *
+ * <pre>
+ * CSVReader reader = new CSVReader(new FileReader(fileName));
+ * int col = reader.getColumn("Tc");
+ *
+ * while (reader.next())
+ *     Tc = reader.getDouble(col);
+ *
+ * reader.close();
+ * </pre>
+ */
+public class CSVReader
+{
+    private final static int BUFFER_SIZE = 8192;
+
+    private Reader reader = null;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    // Characters of the current row, the fields are ranges in it
+    private char[] row = new char[256];
+    private int rowLength = 0;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int numOfFields = 0;
+    private int rowNumber = 0;
+
+    private String[] header = null;
+    private HashMap columnMap = new HashMap();
+
+    /**
+     * Creates the reader and reads the names of the columns.
+     * @param reader Source of the data, it is buffered by this class
+     */
+    public CSVReader(Reader reader)
+        throws IOException
+    {
+        this.reader = reader;
+
+        if (next())
+            header = new String[numOfFields];
+        else
+            header = new String[0];
+
+        for (int i = 0; i < header.length; i++)
+        {
+            header[i] = getString(i);
+            columnMap.put(header[i], new Integer(i));
+        }
+
+        rowNumber = 0;
+    }
+
+    /**
+     * Returns the names of the columns.
+     */
+    public String[] getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Returns the index of the named column, or -1 if there is no such
+     * column.
+     */
+    public int getColumn(String name)
+    {
+        Integer column = (Integer) columnMap.get(name);
+
+        return (column == null) ? -1 : column.intValue();
+    }
+
+    /**
+     * Reads the next row.
+     * @return false at the end of the data
+     */
+    public boolean next()
+        throws IOException
+    {
+        int c = 0;
+
+        rowLength = 0;
+        numOfFields = 0;
+
+        c = read();
+
+        // Skip the blank lines
+        while ((c == ' ') || (c == '\t') || (c == '\n') || (c == '\r'))
+            c = read();
+
+        if (c == -1)
+            return false;
+
+        while (true)
+        {
+            // Leading blanks of the field
+            while ((c == ' ') || (c == '\t'))
+                c = read();
+
+            if (numOfFields == fieldStart.length)
+            {
+                fieldStart = grow(fieldStart);
+                fieldEnd = grow(fieldEnd);
+            }
+
+            fieldStart[numOfFields] = rowLength;
+
+            if (c == '\"')
+            {
+                c = read();
+
+                while (c != -1)
+                {
+                    if (c == '\"')
+                    {
+                        c = read();
+
+                        if (c != '\"')
+                            break;
+                    }
+
+                    append((char) c);
+                    c = read();
+                }
+
+                fieldEnd[numOfFields] = rowLength;
+
+                // Anything up to the separator after the closing quote
+                while ((c != ',') && (c != '\n') && (c != '\r') && (c != -1))
+                    c = read();
+            }
+            else
+            {
+                while ((c != ',') && (c != '\n') && (c != '\r') && (c != -1))
+                {
+                    append((char) c);
+                    c = read();
+                }
+
+                fieldEnd[numOfFields] = rowLength;
+
+                while ((fieldEnd[numOfFields] > fieldStart[numOfFields])
+                    && (row[fieldEnd[numOfFields] - 1] <= ' '))
+                {
+                    fieldEnd[numOfFields]--;
+                }
+            }
+
+            numOfFields++;
+
+            if (c != ',')
+                break;
+
+            c = read();
+        }
+
+        rowNumber++;
+        return true;
+    }
+
+    /**
+     * Returns the number of the current row, not counting the names of
+     * the columns and the blank lines.
+     */
+    public int getRowNumber()
+    {
+        return rowNumber;
+    }
+
+    /**
+     * Returns the number of fields in the current row.
+     */
+    public int getNumOfFields()
+    {
+        return numOfFields;
+    }
+
+    /**
+     * Returns whether the current row has no value for the column.
+     */
+    public boolean isNull(int column)
+    {
+        return (column < 0) || (column >= numOfFields);
+    }
+
+    /**
+     * Returns the field of the current row, or null if the row has
+     * no value for the column.
+     */
+    public String getString(int column)
+    {
+        if (isNull(column))
+            return null;
+
+        return new String(row, fieldStart[column], fieldEnd[column] - fieldStart[column]);
+    }
+
+    /**
+     * Compares the field of the current row with the text, ignoring case.
+     */
+    public boolean equalsIgnoreCase(int column, String text)
+    {
+        int i = 0;
+        int start = 0;
+
+        if (isNull(column) || (fieldEnd[column] - fieldStart[column] != text.length()))
+            return false;
+
+        start = fieldStart[column];
+
+        for (i = 0; i < text.length(); i++)
+        {
+            if (Character.toLowerCase(row[start + i]) != Character.toLowerCase(text.charAt(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the field of the current row as int.
+     */
+    public int getInt(int column)
+        throws NumberFormatException
+    {
+        int i = 0;
+        int start = 0;
+        int end = 0;
+        int value = 0;
+        boolean negative = false;
+
+        if (isNull(column))
+            throw new NumberFormatException("null");
+
+        start = fieldStart[column];
+        end = fieldEnd[column];
+
+        if ((start < end) && ((row[start] == '-') || (row[start] == '+')))
+        {
+            negative = (row[start] == '-');
+            start++;
+        }
+
+        if ((start == end) || (end - start > 9))
+            return Integer.parseInt(getString(column));
+
+        for (i = start; i < end; i++)
+        {
+            if ((row[i] < '0') || (row[i] > '9'))
+                throw new NumberFormatException(getString(column));
+
+            value = value * 10 + (row[i] - '0');
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the field of the current row as double.
+     */
+    public double getDouble(int column)
+        throws NumberFormatException
+    {
+        if (isNull(column))
+            throw new NumberFormatException("null");
+
+        return Double.parseDouble(getString(column));
+    }
+
+    /**
+     * Closes the underlying reader.
+     */
+    public void close()
+    {
+        try
+        {
+            reader.close();
+        }
+        catch (IOException ex)
+        {
+        }
+    }
+
+    /**
+     * Returns the next character, or -1 at the end of the data.
+     */
+    private int read()
+        throws IOException
+    {
+        if (position == limit)
+        {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+
+            if (limit <= 0)
+            {
+                limit = 0;
+                return -1;
+            }
+        }
+
+        return buffer[position++];
+    }
+
+    private void append(char c)
+    {
+        if (rowLength == row.length)
+        {
+            char[] newRow = new char[2 * row.length];
+
+            System.arraycopy(row, 0, newRow, 0, rowLength);
+            row = newRow;
+        }
+
+        row[rowLength++] = c;
+    }
+
+    private static int[] grow(int[] array)
+    {
+        int[] newArray = new int[2 * array.length];
+
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
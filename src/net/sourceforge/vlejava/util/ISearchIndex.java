@@ -0,0 +1,22 @@
+/*
+ * Implement this interface to let InputDialog filter its values
+ * as the user types.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.util;
+
+/**
+ * Implement this interface to let InputDialog filter its values
+ * as the user types.
+ */
+public interface ISearchIndex
+{
+    /**
+     * Returns the values matching the text typed so far, in the order
+     * they are to be listed. An empty text matches all the values.
+     */
+    public Object[] search(String prefix);
+}
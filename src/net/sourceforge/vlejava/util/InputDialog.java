@@ -11,18 +11,29 @@ import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.event.*;
 
 /**
- * Basic input dialog for value selection.
+ * Basic input dialog for value selection. When it is given a search
+ * index, the dialog has a text field above the list, and the list
+ * shows the values matching the text typed in it.
  */
 public class InputDialog extends JDialog
-    implements ActionListener, WindowListener
+    implements ActionListener, WindowListener, DocumentListener
 {
     private Object[] returnVal = null;
     private JList list = null;
+    private JTextField searchField = null;
+    private ISearchIndex searchIndex = null;
 
     protected InputDialog(Frame owner, String title, String message,
         Object[] selectValues, boolean multiSelect)
+    {
+        this(owner, title, message, selectValues, null, multiSelect);
+    }
+
+    protected InputDialog(Frame owner, String title, String message,
+        Object[] selectValues, ISearchIndex searchIndex, boolean multiSelect)
     {
         super(owner, title, true);
 
@@ -44,7 +55,26 @@ public class InputDialog extends JDialog
             list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 
         msgLabel.setBorder(new EmptyBorder(10, 10, 5, 10));
-        contentPane.add(msgLabel, BorderLayout.NORTH);
+
+        if (searchIndex == null)
+        {
+            contentPane.add(msgLabel, BorderLayout.NORTH);
+        }
+        else
+        {
+            JPanel topPanel = new JPanel(new BorderLayout());
+
+            this.searchIndex = searchIndex;
+            searchField = new JTextField();
+            searchField.getDocument().addDocumentListener(this);
+            searchField.setActionCommand("OKAY");
+            searchField.addActionListener(this);
+
+            topPanel.add(msgLabel, BorderLayout.NORTH);
+            topPanel.add(searchField, BorderLayout.CENTER);
+            topPanel.setBorder(new EmptyBorder(0, 0, 5, 10));
+            contentPane.add(topPanel, BorderLayout.NORTH);
+        }
 
         scrollPane.setViewportView(list);
         scrollPane.setBorder(new CompoundBorder(emptyBorder, etchedBorder));
@@ -83,6 +113,34 @@ public class InputDialog extends JDialog
         return retVal;
     }
 
+    /**
+     * Shows the dialog with a text field to search the values.
+     * @param searchIndex Index giving the values to list for the typed text
+     */
+    public static Object[] show(Frame owner, String title, String message,
+        ISearchIndex searchIndex, boolean multiSelect)
+    {
+        InputDialog dialog = new InputDialog(owner, title, message,
+                                        searchIndex.search(""), searchIndex, multiSelect);
+
+        Object[] retVal = dialog.returnVal;
+        dialog.dispose();
+
+        return retVal;
+    }
+
+    /**
+     * Lists the values matching the text of the search field. The
+     * first value is selected, so that Enter adds it.
+     */
+    private void search()
+    {
+        list.setListData(searchIndex.search(searchField.getText()));
+
+        if (list.getModel().getSize() > 0)
+            list.setSelectedIndex(0);
+    }
+
     private void okay()
     {
         returnVal = list.getSelectedValues();
@@ -114,6 +172,18 @@ public class InputDialog extends JDialog
         close();
     }
 
+    public void insertUpdate(DocumentEvent ev)
+    {
+        search();
+    }
+
+    public void removeUpdate(DocumentEvent ev)
+    {
+        search();
+    }
+
+    public void changedUpdate(DocumentEvent ev) {}
+
     public void windowActivated(WindowEvent ev) {}
     public void windowClosed(WindowEvent ev) {}
     public void windowDeactivated(WindowEvent ev) {}
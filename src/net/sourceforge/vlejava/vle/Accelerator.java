@@ -0,0 +1,169 @@
+/*
+ * Acceleration of successive substitution.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+/**
+ * Acceleration of a successive substitution u = g(u). The loop hands over
+ * the values it started the iteration with together with the values it
+ * computed from them, which are replaced by the values to continue with.
+ * The history is kept in arrays made once, so the loop does not allocate
+ * memory. An object of this class follows one loop, so it must not be
+ * shared between threads.
+ */
+class Accelerator
+{
+    /** Number of plain steps between two dominant eigenvalue extrapolations. */
+    private final static int DEM_PERIOD = 3;
+    /** Bounds on the Wegstein factor, to keep the steps from running away. */
+    private final static double WEGSTEIN_QMIN = -2;
+    private final static double WEGSTEIN_QMAX = 0;
+
+    private int method = SolverOptions.ACCEL_NONE;
+    private int steps = 0;
+    private int history = 0;
+    private double[] prevIn = null;
+    private double[] prevOut = null;
+    private double[] prevPrevOut = null;
+
+    /**
+     * Creates the accelerator for a loop over the given number of variables.
+     * @param method One of the SolverOptions.ACCEL_* constants
+     * @param size Number of variables
+     */
+    Accelerator(int method, int size)
+    {
+        this.method = method;
+
+        if (method != SolverOptions.ACCEL_NONE)
+        {
+            prevIn = new double[size];
+            prevOut = new double[size];
+            prevPrevOut = new double[size];
+        }
+    }
+
+    /**
+     * Creates the accelerator for a loop with the method selected
+     * in the options.
+     * @param options Solver options, or null for no acceleration
+     * @param size Number of variables
+     */
+    Accelerator(SolverOptions options, int size)
+    {
+        this((options == null) ? SolverOptions.ACCEL_NONE : options.getAcceleration(), size);
+    }
+
+    /**
+     * Returns whether the accelerator changes the iteration at all.
+     */
+    boolean isEnabled()
+    {
+        return (method != SolverOptions.ACCEL_NONE);
+    }
+
+    /**
+     * Forgets the earlier iterations, for a new run of the loop.
+     */
+    void reset()
+    {
+        steps = 0;
+        history = 0;
+    }
+
+    /**
+     * Replaces the computed values by the values to continue the loop with.
+     * @param in The values the iteration started with
+     * @param out The values computed from them by the iteration
+     */
+    void accelerate(double[] in, double[] out)
+    {
+        int i = 0;
+        double factor = 0;
+        double delta = 0;
+
+        if (method == SolverOptions.ACCEL_DEM)
+            factor = extrapolationFactor(out);
+
+        for (i = 0; i < out.length; i++)
+        {
+            delta = out[i] - prevOut[i];
+
+            if ((method == SolverOptions.ACCEL_WEGSTEIN) && (history > 0))
+                factor = wegsteinFactor(in[i] - prevIn[i], delta);
+
+            prevPrevOut[i] = prevOut[i];
+            prevOut[i] = out[i];
+            prevIn[i] = in[i];
+
+            if (method == SolverOptions.ACCEL_DEM)
+                out[i] += factor * delta;
+            else if (method == SolverOptions.ACCEL_WEGSTEIN)
+                out[i] += factor * (in[i] - out[i]);
+        }
+
+        history++;
+    }
+
+    /**
+     * Returns the factor by which the last step is extended along the
+     * dominant eigenvector of the iteration, which is estimated from the
+     * last three iterates. The extrapolation is only done every DEM_PERIOD
+     * steps, and only when the iteration converges monotonically, as the
+     * estimate is poor otherwise.
+     */
+    private double extrapolationFactor(double[] out)
+    {
+        int i = 0;
+        double num = 0;
+        double den = 0;
+        double lambda = 0;
+
+        steps++;
+
+        if ((steps < DEM_PERIOD) || (history < 2))
+            return 0;
+
+        for (i = 0; i < out.length; i++)
+        {
+            num += (out[i] - prevOut[i]) * (out[i] - prevOut[i]);
+            den += (out[i] - prevOut[i]) * (prevOut[i] - prevPrevOut[i]);
+        }
+
+        if (den == 0)
+            return 0;
+
+        lambda = num / den;
+
+        if ((lambda <= 0) || (lambda >= 1))
+            return 0;
+
+        steps = 0;
+        return lambda / (1 - lambda);
+    }
+
+    /**
+     * Returns the bounded Wegstein factor of one variable, with the slope
+     * of g estimated from the last two iterations.
+     * @param dIn Change of the value the iteration started with
+     * @param dOut Change of the value computed by the iteration
+     */
+    private static double wegsteinFactor(double dIn, double dOut)
+    {
+        double s = 0;
+
+        if (dIn == 0)
+            return 0;
+
+        s = dOut / dIn;
+
+        if (s == 1)
+            return 0;
+
+        return Math.min(WEGSTEIN_QMAX, Math.max(WEGSTEIN_QMIN, s / (s - 1)));
+    }
+}
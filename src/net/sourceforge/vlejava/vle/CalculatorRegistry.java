@@ -0,0 +1,190 @@
+/*
+ * Registry of the calculation methods of one kind.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+import java.util.*;
+import java.io.*;
+import java.lang.reflect.*;
+import net.sourceforge.vlejava.util.MessageHandler;
+
+/**
+ * Registry of the calculation methods of one kind, activity or fugacity.
+ * The methods are read once from the properties file, in the order of the
+ * file, followed by the providers of the calculator interface found by
+ * java.util.ServiceLoader which are not in the file, in the order of
+ * their class names. The method ID is the position in this list, so it
+ * stays the same from run to run. The constructor of each class is
+ * resolved when the registry is built, and an unconfigured instance is
+ * kept to answer the questions which do not need a context.
+ */
+class CalculatorRegistry
+{
+    private ArrayList names = new ArrayList();
+    private ArrayList entries = new ArrayList();
+
+    /**
+     * Builds the registry. The classes which can not be loaded are
+     * reported and left out.
+     * @param fileName Properties file of class names and method names
+     * @param type The calculator interface
+     * @param errorKey Message key for the classes which can not be loaded
+     */
+    CalculatorRegistry(String fileName, Class type, String errorKey)
+    {
+        int i = 0;
+        Object calculator = null;
+        Iterator iterator = null;
+        TreeMap providers = new TreeMap();
+        final ArrayList classNames = new ArrayList();
+
+        // Properties which remembers the order of the keys in the file
+        Properties props = new Properties()
+        {
+            public synchronized Object put(Object key, Object value)
+            {
+                if (!classNames.contains(key))
+                    classNames.add(key);
+
+                return super.put(key, value);
+            }
+        };
+
+        try
+        {
+            props.load(new FileInputStream(fileName));
+        }
+        catch(Exception ex)
+        {
+            System.err.println(MessageHandler.getString("errLoadFileFail") + ": " + fileName);
+        }
+
+        for (i = 0; i < classNames.size(); i++)
+        {
+            try
+            {
+                add((String) props.get(classNames.get(i)), Class.forName((String) classNames.get(i)), type);
+            }
+            catch (Exception ex)
+            {
+                System.err.println(MessageHandler.getString(errorKey) + ": " + classNames.get(i));
+            }
+        }
+
+        iterator = ServiceLoader.load(type).iterator();
+
+        while (true)
+        {
+            try
+            {
+                if (!iterator.hasNext())
+                    break;
+
+                calculator = iterator.next();
+
+                if (!classNames.contains(calculator.getClass().getName()))
+                    providers.put(calculator.getClass().getName(), calculator.getClass());
+            }
+            catch (ServiceConfigurationError err)
+            {
+                System.err.println(MessageHandler.getString(errorKey) + ": " + err.getMessage());
+            }
+        }
+
+        iterator = providers.values().iterator();
+
+        while (iterator.hasNext())
+        {
+            Class calcClass = (Class) iterator.next();
+
+            try
+            {
+                add(calcClass.getName().substring(calcClass.getName().lastIndexOf('.') + 1), calcClass, type);
+            }
+            catch (Exception ex)
+            {
+                System.err.println(MessageHandler.getString(errorKey) + ": " + calcClass.getName());
+            }
+        }
+    }
+
+    /**
+     * Adds a method, after checking that its class can be instantiated.
+     */
+    private void add(String name, Class calcClass, Class type)
+        throws Exception
+    {
+        Entry entry = new Entry();
+
+        if (!type.isAssignableFrom(calcClass))
+            throw new ClassCastException(calcClass.getName());
+
+        entry.constructor = calcClass.getConstructor(new Class[0]);
+        entry.prototype = entry.constructor.newInstance(new Object[0]);
+
+        names.add(name);
+        entries.add(entry);
+    }
+
+    /**
+     * Returns the names of the methods, by method ID.
+     */
+    ArrayList getNames()
+    {
+        return names;
+    }
+
+    /**
+     * Returns the unconfigured instance of a method, which must not be
+     * given a context.
+     */
+    Object getPrototype(int method)
+        throws VLEException
+    {
+        return getEntry(method).prototype;
+    }
+
+    /**
+     * Returns a new instance of a method.
+     */
+    Object create(int method)
+        throws VLEException
+    {
+        Entry entry = getEntry(method);
+
+        try
+        {
+            return entry.constructor.newInstance(new Object[0]);
+        }
+        catch (InvocationTargetException ex)
+        {
+            throw new VLEException(ex.getTargetException().toString());
+        }
+        catch (Exception ex)
+        {
+            throw new VLEException(ex.toString());
+        }
+    }
+
+    private Entry getEntry(int method)
+        throws VLEException
+    {
+        if ((method < 0) || (method >= entries.size()))
+            throw new VLEException(MessageHandler.getString("errUnknownMethod") + ": " + method);
+
+        return (Entry) entries.get(method);
+    }
+
+    /**
+     * The constructor and the unconfigured instance of a method.
+     */
+    private static class Entry
+    {
+        Constructor constructor = null;
+        Object prototype = null;
+    }
+}
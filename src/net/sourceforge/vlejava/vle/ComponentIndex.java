@@ -0,0 +1,247 @@
+/*
+ * Search index of the components.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+import java.util.*;
+import net.sourceforge.vlejava.util.ISearchIndex;
+
+/**
+ * Search index of the components, built once when the data is loaded.
+ * The components are found by their ID in an array, and by a prefix of
+ * their name in a trie. Besides the whole name, every word of the name
+ * is a key of the trie, so "acid" finds "Acetic Acid" and "oxide" finds
+ * "2-Propylene oxide". The case of the letters is ignored.
+ *
+ * The keys are sorted before the trie is built, so the keys under a node
+ * are a range of the sorted keys, and a node only keeps the bounds of
+ * its range. A search walks down the trie along the prefix, and returns
+ * the components of the range of the node it reaches. The index is not
+ * changed after it is built, so it can be shared by any number of threads.
+ */
+public class ComponentIndex implements ISearchIndex
+{
+    private ComponentData[] components = null;
+    private ComponentData[] byId = null;
+
+    // Position of the component of each sorted key
+    private int[] keyComps = null;
+    private Node root = null;
+
+    /**
+     * Builds the index.
+     * @param compList List of ComponentData, in the order of the search results
+     */
+    public ComponentIndex(List compList)
+    {
+        int i = 0;
+        int maxId = -1;
+        Key[] keys = null;
+        ArrayList keyList = new ArrayList();
+
+        components = (ComponentData[]) compList.toArray(new ComponentData[compList.size()]);
+
+        for (i = 0; i < components.length; i++)
+        {
+            maxId = Math.max(maxId, components[i].compId);
+            addKeys(components[i].name, i, keyList);
+        }
+
+        byId = new ComponentData[maxId + 1];
+
+        for (i = 0; i < components.length; i++)
+        {
+            if (components[i].compId >= 0)
+                byId[components[i].compId] = components[i];
+        }
+
+        keys = (Key[]) keyList.toArray(new Key[keyList.size()]);
+        Arrays.sort(keys);
+
+        keyComps = new int[keys.length];
+        root = new Node();
+        root.end = keys.length;
+
+        for (i = 0; i < keys.length; i++)
+        {
+            keyComps[i] = keys[i].comp;
+            insert(keys[i].text, i);
+        }
+    }
+
+    /**
+     * Adds the keys of a name, the whole name and each word of it. A
+     * word starts after a blank or a punctuation mark, and goes on to
+     * the end of the name.
+     */
+    private static void addKeys(String name, int comp, ArrayList keyList)
+    {
+        int i = 0;
+        String text = normalize(name);
+
+        if (text.length() == 0)
+            return;
+
+        keyList.add(new Key(text, comp));
+
+        for (i = 1; i < text.length(); i++)
+        {
+            if (!Character.isLetterOrDigit(text.charAt(i - 1)) && Character.isLetterOrDigit(text.charAt(i)))
+                keyList.add(new Key(text.substring(i), comp));
+        }
+    }
+
+    private static String normalize(String text)
+    {
+        return (text == null) ? "" : text.trim().toLowerCase();
+    }
+
+    /**
+     * Adds a key to the trie. The keys are added in sorted order, so
+     * that the new key is at the end of the range of each node on its
+     * path, and the children of a node are added in sorted order.
+     */
+    private void insert(String text, int key)
+    {
+        int i = 0;
+        Node node = root;
+        Node child = null;
+
+        for (i = 0; i < text.length(); i++)
+        {
+            child = node.getChild(text.charAt(i));
+
+            if (child == null)
+            {
+                child = node.addChild(text.charAt(i));
+                child.start = key;
+            }
+
+            child.end = key + 1;
+            node = child;
+        }
+    }
+
+    /**
+     * Returns the number of components.
+     */
+    public int size()
+    {
+        return components.length;
+    }
+
+    /**
+     * Returns the component of the given ID, or null if there is none.
+     */
+    public ComponentData getComponent(int compId)
+    {
+        if ((compId < 0) || (compId >= byId.length))
+            return null;
+
+        return byId[compId];
+    }
+
+    /**
+     * Returns the components, a word of whose name starts with the
+     * prefix, in the order of the list the index was built from.
+     */
+    public Object[] search(String prefix)
+    {
+        int i = 0;
+        int count = 0;
+        int[] comps = null;
+        String text = normalize(prefix);
+        ComponentData[] result = null;
+        Node node = root;
+
+        for (i = 0; (i < text.length()) && (node != null); i++)
+            node = node.getChild(text.charAt(i));
+
+        if (node == null)
+            return new ComponentData[0];
+
+        if (node == root)
+            return (ComponentData[]) components.clone();
+
+        // A component may have several keys in the range
+        comps = new int[node.end - node.start];
+        System.arraycopy(keyComps, node.start, comps, 0, comps.length);
+        Arrays.sort(comps);
+
+        for (i = 0; i < comps.length; i++)
+        {
+            if ((i == 0) || (comps[i] != comps[i - 1]))
+                comps[count++] = comps[i];
+        }
+
+        result = new ComponentData[count];
+
+        for (i = 0; i < count; i++)
+            result[i] = components[comps[i]];
+
+        return result;
+    }
+
+    /**
+     * A node of the trie, with the range of the sorted keys under it.
+     */
+    private static class Node
+    {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        int start = 0;
+        int end = 0;
+
+        Node getChild(char c)
+        {
+            int i = Arrays.binarySearch(labels, c);
+
+            return (i < 0) ? null : children[i];
+        }
+
+        /**
+         * Adds a child, whose label is greater than the labels of the
+         * other children.
+         */
+        Node addChild(char c)
+        {
+            int n = labels.length;
+            char[] newLabels = new char[n + 1];
+            Node[] newChildren = new Node[n + 1];
+
+            System.arraycopy(labels, 0, newLabels, 0, n);
+            System.arraycopy(children, 0, newChildren, 0, n);
+            newLabels[n] = c;
+            newChildren[n] = new Node();
+
+            labels = newLabels;
+            children = newChildren;
+
+            return children[n];
+        }
+    }
+
+    /**
+     * A key of the trie and the position of its component.
+     */
+    private static class Key implements Comparable
+    {
+        final String text;
+        final int comp;
+
+        Key(String text, int comp)
+        {
+            this.text = text;
+            this.comp = comp;
+        }
+
+        public int compareTo(Object obj)
+        {
+            return text.compareTo(((Key) obj).text);
+        }
+    }
+}
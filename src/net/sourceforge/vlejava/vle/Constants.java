@@ -23,9 +23,11 @@ public class Constants
     public final static int    UNIFAC_GROUP_NUM  = 50;
 
     public final static String COMP_DATA_FILE    = "config/Component.dat";
+    public final static String COMP_GROUP_FILE   = "config/CompGroup.dat";
     public final static String DEMO_DATA_FILE    = "config/Demo.dat";
     public final static String GROUP_DATA_FILE   = "config/Group.dat";
     public final static String UNIFAC_DATA_FILE  = "config/Unifac.dat";
+    public final static String SNAPSHOT_FILE     = "config/VLE.snapshot";
     public final static String ACTIVITY_MAP_FILE = "config/activity.properties";
     public final static String FUGACITY_MAP_FILE = "config/fugacity.properties";
 }
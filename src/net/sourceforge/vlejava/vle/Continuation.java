@@ -0,0 +1,111 @@
+/*
+ * Starting guesses for the points of a composition sweep.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+/**
+ * Starting guesses for the points of a composition sweep. The results
+ * of the sweep are added one after the other, and the guess for the next
+ * point is either the last result, or the linear extrapolation of the last
+ * two results. An object of this class follows one sweep, so it must not
+ * be shared between threads.
+ */
+public class Continuation
+{
+    public final static int SWEEP_LIQUID = 0;
+    public final static int SWEEP_VAPOUR = 1;
+
+    private int sweepType = SWEEP_LIQUID;
+    private boolean extrapolate = false;
+    private VLEResult prevResult = null;
+    private VLEResult lastResult = null;
+
+    /**
+     * Creates the continuation for a sweep.
+     * @param sweepType SWEEP_LIQUID for bubble points, SWEEP_VAPOUR for dew points
+     * @param extrapolate Whether the guess is extrapolated from the last two results
+     */
+    public Continuation(int sweepType, boolean extrapolate)
+    {
+        this.sweepType = sweepType;
+        this.extrapolate = extrapolate;
+    }
+
+    /**
+     * Returns the starting guess for the given composition, or null
+     * if there is no result yet.
+     * @param fracs Composition of the next point of the sweep
+     */
+    public VLEResult getGuess(double[] fracs)
+    {
+        double lastStep = 0;
+
+        if ((!extrapolate) || (prevResult == null))
+            return lastResult;
+
+        lastStep = distance(getFractions(lastResult), getFractions(prevResult));
+
+        if (lastStep == 0)
+            return lastResult;
+
+        return VLEResult.extrapolate(prevResult, lastResult,
+            distance(fracs, getFractions(lastResult)) / lastStep);
+    }
+
+    /**
+     * Adds the result of the last point of the sweep. A result which has
+     * not converged, or whose T or P is not a number, is left out, so that
+     * the next point starts from the last good result, or cold.
+     */
+    public void addResult(VLEResult result)
+    {
+        if (!result.getTelemetry().isConverged()
+            || !isFinite(result.getTemperature()) || !isFinite(result.getPressure()))
+        {
+            return;
+        }
+
+        prevResult = lastResult;
+        lastResult = result;
+    }
+
+    /**
+     * Forgets the results, so that the next point starts cold.
+     */
+    public void reset()
+    {
+        prevResult = null;
+        lastResult = null;
+    }
+
+    /**
+     * Returns the fractions which are swept in the given result.
+     */
+    private double[] getFractions(VLEResult result)
+    {
+        return (sweepType == SWEEP_LIQUID) ? result.getLiquidMoleFractions()
+                                           : result.getVapourMoleFractions();
+    }
+
+    private static boolean isFinite(double value)
+    {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    /**
+     * Returns the distance between two compositions.
+     */
+    private static double distance(double[] fracs1, double[] fracs2)
+    {
+        double sum = 0;
+
+        for (int i = 0; i < fracs1.length; i++)
+            sum += (fracs1[i] - fracs2[i]) * (fracs1[i] - fracs2[i]);
+
+        return Math.sqrt(sum);
+    }
+}
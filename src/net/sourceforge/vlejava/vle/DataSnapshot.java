@@ -0,0 +1,610 @@
+/*
+ * Binary snapshot of the data files.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Binary snapshot of the component, demo, group and UNIFAC data. The
+ * snapshot is compiled from the data files the first time all of them
+ * have been read, and is written next to them. The header holds the
+ * time and length of each data file, and the snapshot is not used once
+ * one of them changes.
+ *
+ * The data is stored by columns of fixed width, so that the file is read
+ * through a MappedByteBuffer without any parsing; the value of a row is
+ * at the start of its column plus the row number times the width. All
+ * the double columns come first, then the int columns and then the
+ * characters of the string table, so that every value is aligned to its
+ * width. A string is stored as its index in the string table.
+ */
+public class DataSnapshot
+{
+    private final static int MAGIC   = 0x564C4553;
+    private final static int VERSION = 1;
+
+    private final static int NUM_OF_COUNTS = 7;
+
+    private final static int UNIFAC_SIZE = Constants.UNIFAC_GROUP_NUM;
+
+    private ByteBuffer buffer = null;
+
+    // Numbers of rows
+    private int numOfComps      = 0;
+    private int numOfCompGroups = 0;
+    private int numOfGroups     = 0;
+    private int numOfDemos      = 0;
+    private int numOfParams     = 0;
+    private int numOfStrings    = 0;
+    private int numOfChars      = 0;
+
+    // Positions of the columns
+    private int posTc         = 0;
+    private int posPc         = 0;
+    private int posZc         = 0;
+    private int posOmega      = 0;
+    private int posAntA       = 0;
+    private int posAntB       = 0;
+    private int posAntC       = 0;
+    private int posQk         = 0;
+    private int posRk         = 0;
+    private int posUnifac     = 0;
+    private int posDemoValue  = 0;
+    private int posCompId     = 0;
+    private int posCompName   = 0;
+    private int posGroupStart = 0;
+    private int posGroupNum   = 0;
+    private int posGroupRef   = 0;
+    private int posGroupCount = 0;
+    private int posGroupName  = 0;
+    private int posGroupNo    = 0;
+    private int posGroupK     = 0;
+    private int posDemoComp1  = 0;
+    private int posDemoComp2  = 0;
+    private int posParamName  = 0;
+    private int posStrStart   = 0;
+    private int posChars      = 0;
+    private int size          = 0;
+
+    /**
+     * Snapshots are only created by open.
+     */
+    private DataSnapshot()
+    {
+    }
+
+    /**
+     * Returns the time and length of each file, which the snapshot
+     * compares with the values it was written for.
+     */
+    public static long[] getStamps(String[] fileNames)
+    {
+        long[] stamps = new long[2 * fileNames.length];
+
+        for (int i = 0; i < fileNames.length; i++)
+        {
+            File file = new File(fileNames[i]);
+
+            stamps[2 * i]     = file.lastModified();
+            stamps[2 * i + 1] = file.length();
+        }
+
+        return stamps;
+    }
+
+    /**
+     * Opens the snapshot, if it was written for the given stamps of the
+     * data files. The header is read first, and the file is only mapped
+     * if the snapshot is current, so that a snapshot which is about to be
+     * written again is not held open by a mapping.
+     * @return The snapshot, or null if there is no snapshot or it was
+     *         written for other data files
+     * @throws IOException If the snapshot can not be read or is damaged
+     */
+    public static DataSnapshot open(String fileName, long[] stamps)
+        throws IOException
+    {
+        File file = new File(fileName);
+        FileInputStream in = null;
+        DataSnapshot snapshot = new DataSnapshot();
+
+        if (!file.isFile())
+            return null;
+
+        in = new FileInputStream(file);
+
+        try
+        {
+            if (!snapshot.readHeader(new DataInputStream(new BufferedInputStream(in)), stamps, file.length()))
+                return null;
+
+            // The mapping stays valid after the channel is closed
+            snapshot.buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, snapshot.size);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Reads the header, and finds the positions of the columns.
+     * @param length Length of the snapshot file
+     * @return false if the snapshot is of another version or other files
+     */
+    private boolean readHeader(DataInputStream in, long[] stamps, long length)
+        throws IOException
+    {
+        int i = 0;
+
+        if ((length < headerSize(0))
+            || (in.readInt() != MAGIC)
+            || (in.readInt() != VERSION)
+            || (in.readInt() != stamps.length)
+            || (length < headerSize(stamps.length)))
+        {
+            return false;
+        }
+
+        for (i = 0; i < stamps.length; i++)
+        {
+            if (in.readLong() != stamps[i])
+                return false;
+        }
+
+        numOfComps      = in.readInt();
+        numOfCompGroups = in.readInt();
+        numOfGroups     = in.readInt();
+        numOfDemos      = in.readInt();
+        numOfParams     = in.readInt();
+        numOfStrings    = in.readInt();
+        numOfChars      = in.readInt();
+
+        layout(headerSize(stamps.length));
+
+        if ((numOfComps < 0) || (numOfCompGroups < 0) || (numOfGroups < 0) || (numOfDemos < 0)
+            || (numOfParams < 0) || (numOfStrings < 0) || (numOfChars < 0)
+            || (size != length))
+        {
+            throw new IOException("Damaged snapshot");
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the size of the header, rounded up to a multiple of 8 so
+     * that the double columns are aligned.
+     */
+    private static int headerSize(int numOfStamps)
+    {
+        return (12 + 8 * numOfStamps + 4 * NUM_OF_COUNTS + 7) & ~7;
+    }
+
+    /**
+     * Finds the positions of the columns from the numbers of rows.
+     */
+    private void layout(int start)
+    {
+        int pos = start;
+
+        posTc         = pos; pos += 8 * numOfComps;
+        posPc         = pos; pos += 8 * numOfComps;
+        posZc         = pos; pos += 8 * numOfComps;
+        posOmega      = pos; pos += 8 * numOfComps;
+        posAntA       = pos; pos += 8 * numOfComps;
+        posAntB       = pos; pos += 8 * numOfComps;
+        posAntC       = pos; pos += 8 * numOfComps;
+        posQk         = pos; pos += 8 * numOfGroups;
+        posRk         = pos; pos += 8 * numOfGroups;
+        posUnifac     = pos; pos += 8 * UNIFAC_SIZE * UNIFAC_SIZE;
+        posDemoValue  = pos; pos += 8 * numOfDemos * numOfParams;
+        posCompId     = pos; pos += 4 * numOfComps;
+        posCompName   = pos; pos += 4 * numOfComps;
+        posGroupStart = pos; pos += 4 * numOfComps;
+        posGroupNum   = pos; pos += 4 * numOfComps;
+        posGroupRef   = pos; pos += 4 * numOfCompGroups;
+        posGroupCount = pos; pos += 4 * numOfCompGroups;
+        posGroupName  = pos; pos += 4 * numOfGroups;
+        posGroupNo    = pos; pos += 4 * numOfGroups;
+        posGroupK     = pos; pos += 4 * numOfGroups;
+        posDemoComp1  = pos; pos += 4 * numOfDemos;
+        posDemoComp2  = pos; pos += 4 * numOfDemos;
+        posParamName  = pos; pos += 4 * numOfParams;
+        posStrStart   = pos; pos += 4 * (numOfStrings + 1);
+        posChars      = pos; pos += 2 * numOfChars;
+        size          = pos;
+    }
+
+    /**
+     * Writes the snapshot of the data. It is written to a temporary file
+     * of its own in the same directory first, so that a snapshot which is
+     * being written is never read, and several processes writing it at
+     * once do not write into the same file.
+     * @param stamps Stamps of the data files, taken before they were read
+     */
+    public static void write(String fileName, long[] stamps, VLEDatabase database,
+        GroupTables tables)
+        throws IOException
+    {
+        int i = 0;
+        int j = 0;
+        int pos = 0;
+        ComponentData comp = null;
+        GroupData group = null;
+        DemoData demo = null;
+        Double value = null;
+        DataSnapshot snapshot = new DataSnapshot();
+        ArrayList strings = new ArrayList();
+        HashMap stringRefs = new HashMap();
+        ArrayList comps = database.getComponents();
+        ArrayList demos = database.getDemos();
+        GroupData[] groups = (GroupData[]) tables.getGroups().values().toArray(new GroupData[0]);
+        double[][] unifacData = tables.getUnifacData();
+        String[][] groupNames = new String[comps.size()][];
+        int[][] groupCounts = new int[comps.size()][];
+        String[] params = new String[0];
+        File file = new File(fileName);
+        File tempFile = null;
+        DataOutputStream out = null;
+
+        if (demos.size() > 0)
+            params = (String[]) ((DemoData) demos.get(0)).actParamMap.keySet().toArray(new String[0]);
+
+        snapshot.numOfComps  = comps.size();
+        snapshot.numOfGroups = groups.length;
+        snapshot.numOfDemos  = demos.size();
+        snapshot.numOfParams = params.length;
+
+        for (i = 0; i < comps.size(); i++)
+        {
+            comp = (ComponentData) comps.get(i);
+            groupNames[i] = tables.getGroupNames(comp.compId);
+            groupCounts[i] = tables.getGroupCounts(comp.compId);
+
+            if (groupNames[i] != null)
+                snapshot.numOfCompGroups += groupNames[i].length;
+        }
+
+        tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stamps.length);
+
+            for (i = 0; i < stamps.length; i++)
+                out.writeLong(stamps[i]);
+
+            // The string table is written last, its size is counted first
+            for (i = 0; i < comps.size(); i++)
+            {
+                comp = (ComponentData) comps.get(i);
+                addString(comp.name, strings, stringRefs);
+
+                for (j = 0; (groupNames[i] != null) && (j < groupNames[i].length); j++)
+                    addString(groupNames[i][j], strings, stringRefs);
+            }
+
+            for (i = 0; i < groups.length; i++)
+                addString(groups[i].groupName, strings, stringRefs);
+
+            for (i = 0; i < params.length; i++)
+                addString(params[i], strings, stringRefs);
+
+            snapshot.numOfStrings = strings.size();
+
+            for (i = 0; i < strings.size(); i++)
+                snapshot.numOfChars += ((String) strings.get(i)).length();
+
+            out.writeInt(snapshot.numOfComps);
+            out.writeInt(snapshot.numOfCompGroups);
+            out.writeInt(snapshot.numOfGroups);
+            out.writeInt(snapshot.numOfDemos);
+            out.writeInt(snapshot.numOfParams);
+            out.writeInt(snapshot.numOfStrings);
+            out.writeInt(snapshot.numOfChars);
+
+            for (pos = 12 + 8 * stamps.length + 4 * NUM_OF_COUNTS; pos < headerSize(stamps.length); pos++)
+                out.writeByte(0);
+
+            for (i = 0; i < comps.size(); i++) out.writeDouble(((ComponentData) comps.get(i)).Tc);
+            for (i = 0; i < comps.size(); i++) out.writeDouble(((ComponentData) comps.get(i)).Pc);
+            for (i = 0; i < comps.size(); i++) out.writeDouble(((ComponentData) comps.get(i)).Zc);
+            for (i = 0; i < comps.size(); i++) out.writeDouble(((ComponentData) comps.get(i)).omega);
+            for (i = 0; i < comps.size(); i++) out.writeDouble(((ComponentData) comps.get(i)).antA);
+            for (i = 0; i < comps.size(); i++) out.writeDouble(((ComponentData) comps.get(i)).antB);
+            for (i = 0; i < comps.size(); i++) out.writeDouble(((ComponentData) comps.get(i)).antC);
+
+            for (i = 0; i < groups.length; i++) out.writeDouble(groups[i].qk);
+            for (i = 0; i < groups.length; i++) out.writeDouble(groups[i].rk);
+
+            for (i = 1; i <= UNIFAC_SIZE; i++)
+            {
+                for (j = 1; j <= UNIFAC_SIZE; j++)
+                    out.writeDouble(unifacData[i][j]);
+            }
+
+            for (i = 0; i < demos.size(); i++)
+            {
+                demo = (DemoData) demos.get(i);
+
+                if (demo.actParamMap.size() != params.length)
+                    throw new IOException("Demo data has different parameters");
+
+                for (j = 0; j < params.length; j++)
+                {
+                    value = (Double) demo.actParamMap.get(params[j]);
+
+                    if (value == null)
+                        throw new IOException("Demo data has different parameters");
+
+                    out.writeDouble(value.doubleValue());
+                }
+            }
+
+            for (i = 0; i < comps.size(); i++)
+                out.writeInt(((ComponentData) comps.get(i)).compId);
+
+            for (i = 0; i < comps.size(); i++)
+                out.writeInt(getStringRef(((ComponentData) comps.get(i)).name, stringRefs));
+
+            for (i = 0, pos = 0; i < comps.size(); i++)
+            {
+                out.writeInt(pos);
+
+                if (groupNames[i] != null)
+                    pos += groupNames[i].length;
+            }
+
+            // -1 stands for the components without groups
+            for (i = 0; i < comps.size(); i++)
+                out.writeInt((groupNames[i] == null) ? -1 : groupNames[i].length);
+
+            for (i = 0; i < comps.size(); i++)
+            {
+                for (j = 0; (groupNames[i] != null) && (j < groupNames[i].length); j++)
+                    out.writeInt(getStringRef(groupNames[i][j], stringRefs));
+            }
+
+            for (i = 0; i < comps.size(); i++)
+            {
+                for (j = 0; (groupNames[i] != null) && (j < groupNames[i].length); j++)
+                    out.writeInt(groupCounts[i][j]);
+            }
+
+            for (i = 0; i < groups.length; i++) out.writeInt(getStringRef(groups[i].groupName, stringRefs));
+            for (i = 0; i < groups.length; i++) out.writeInt(groups[i].uniGroupNo);
+            for (i = 0; i < groups.length; i++) out.writeInt(groups[i].k);
+
+            for (i = 0; i < demos.size(); i++) out.writeInt(((DemoData) demos.get(i)).compID1);
+            for (i = 0; i < demos.size(); i++) out.writeInt(((DemoData) demos.get(i)).compID2);
+
+            for (i = 0; i < params.length; i++)
+                out.writeInt(getStringRef(params[i], stringRefs));
+
+            for (i = 0, pos = 0; i <= strings.size(); i++)
+            {
+                out.writeInt(pos);
+
+                if (i < strings.size())
+                    pos += ((String) strings.get(i)).length();
+            }
+
+            for (i = 0; i < strings.size(); i++)
+                out.writeChars((String) strings.get(i));
+
+            out.close();
+            out = null;
+
+            file.delete();
+
+            if (!tempFile.renameTo(file))
+                throw new IOException("Can not rename " + tempFile);
+        }
+        finally
+        {
+            if (out != null)
+                out.close();
+
+            // Left over if the snapshot could not be written or renamed
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Adds a string to the string table, if it is not there already.
+     * null is kept out of the table.
+     */
+    private static void addString(String string, ArrayList strings, HashMap stringRefs)
+    {
+        if ((string != null) && !stringRefs.containsKey(string))
+        {
+            stringRefs.put(string, new Integer(strings.size()));
+            strings.add(string);
+        }
+    }
+
+    /**
+     * Returns the index of the string in the string table, or -1 for null.
+     */
+    private static int getStringRef(String string, HashMap stringRefs)
+    {
+        return (string == null) ? -1 : ((Integer) stringRefs.get(string)).intValue();
+    }
+
+    /**
+     * Returns a string of the string table, or null for -1.
+     */
+    public String getString(int ref)
+    {
+        int i = 0;
+        int start = 0;
+        char[] chars = null;
+
+        if (ref == -1)
+            return null;
+
+        start = buffer.getInt(posStrStart + 4 * ref);
+        chars = new char[buffer.getInt(posStrStart + 4 * ref + 4) - start];
+
+        for (i = 0; i < chars.length; i++)
+            chars[i] = buffer.getChar(posChars + 2 * (start + i));
+
+        return new String(chars);
+    }
+
+    public int getNumOfComponents()
+    {
+        return numOfComps;
+    }
+
+    public int getNumOfGroups()
+    {
+        return numOfGroups;
+    }
+
+    public int getNumOfDemos()
+    {
+        return numOfDemos;
+    }
+
+    /**
+     * Returns the ID of a component, without reading the rest of its data.
+     */
+    public int getCompId(int comp)
+    {
+        return buffer.getInt(posCompId + 4 * comp);
+    }
+
+    /**
+     * Returns the name of a component, without reading the rest of its data.
+     */
+    public String getComponentName(int comp)
+    {
+        return getString(buffer.getInt(posCompName + 4 * comp));
+    }
+
+    /**
+     * Returns the data of a component, without its groups.
+     */
+    public ComponentData getComponent(int comp)
+    {
+        ComponentData data = new ComponentData();
+
+        data.compId = getCompId(comp);
+        data.name   = getComponentName(comp);
+        data.Tc     = buffer.getDouble(posTc    + 8 * comp);
+        data.Pc     = buffer.getDouble(posPc    + 8 * comp);
+        data.Zc     = buffer.getDouble(posZc    + 8 * comp);
+        data.omega  = buffer.getDouble(posOmega + 8 * comp);
+        data.antA   = buffer.getDouble(posAntA  + 8 * comp);
+        data.antB   = buffer.getDouble(posAntB  + 8 * comp);
+        data.antC   = buffer.getDouble(posAntC  + 8 * comp);
+
+        data.init();
+        return data;
+    }
+
+    /**
+     * Returns the names of the groups of a component, or null if the
+     * component has no groups.
+     */
+    public String[] getGroupNames(int comp)
+    {
+        int start = buffer.getInt(posGroupStart + 4 * comp);
+        int num = buffer.getInt(posGroupNum + 4 * comp);
+        String[] names = null;
+
+        if (num >= 0)
+        {
+            names = new String[num];
+
+            for (int i = 0; i < num; i++)
+                names[i] = getString(buffer.getInt(posGroupRef + 4 * (start + i)));
+        }
+
+        return names;
+    }
+
+    /**
+     * Returns the number of each group in a component, or null if the
+     * component has no groups.
+     */
+    public int[] getGroupCounts(int comp)
+    {
+        int start = buffer.getInt(posGroupStart + 4 * comp);
+        int num = buffer.getInt(posGroupNum + 4 * comp);
+        int[] counts = null;
+
+        if (num >= 0)
+        {
+            counts = new int[num];
+
+            for (int i = 0; i < num; i++)
+                counts[i] = buffer.getInt(posGroupCount + 4 * (start + i));
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns the data of a group.
+     */
+    public GroupData getGroup(int group)
+    {
+        GroupData data = new GroupData();
+
+        data.groupName  = getString(buffer.getInt(posGroupName + 4 * group));
+        data.uniGroupNo = buffer.getInt(posGroupNo + 4 * group);
+        data.k          = buffer.getInt(posGroupK  + 4 * group);
+        data.qk         = buffer.getDouble(posQk + 8 * group);
+        data.rk         = buffer.getDouble(posRk + 8 * group);
+
+        return data;
+    }
+
+    /**
+     * Returns the data of a demo system.
+     */
+    public DemoData getDemo(int demo)
+    {
+        DemoData data = new DemoData();
+
+        data.compID1 = buffer.getInt(posDemoComp1 + 4 * demo);
+        data.compID2 = buffer.getInt(posDemoComp2 + 4 * demo);
+
+        for (int i = 0; i < numOfParams; i++)
+        {
+            data.actParamMap.put(getString(buffer.getInt(posParamName + 4 * i)),
+                new Double(buffer.getDouble(posDemoValue + 8 * (demo * numOfParams + i))));
+        }
+
+        return data;
+    }
+
+    /**
+     * Copies the UNIFAC group interaction parameters, indexed by the main
+     * group numbers from 1.
+     */
+    public void readUnifacData(double[][] unifacData)
+    {
+        for (int i = 1; i <= UNIFAC_SIZE; i++)
+        {
+            for (int j = 1; j <= UNIFAC_SIZE; j++)
+                unifacData[i][j] = buffer.getDouble(posUnifac + 8 * ((i - 1) * UNIFAC_SIZE + j - 1));
+        }
+    }
+}
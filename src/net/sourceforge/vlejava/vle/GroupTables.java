@@ -0,0 +1,240 @@
+/*
+ * Group data of the group contribution methods.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+import java.io.*;
+import java.util.*;
+import net.sourceforge.vlejava.util.*;
+
+/**
+ * Group data of the group contribution methods, UNIFAC and UNIQUAC: the
+ * groups, their interaction parameters and the groups of each component.
+ * Only these methods need the data, so it is loaded apart from the rest,
+ * when VLEDatabase.getGroupTables is first called. The tables are not
+ * changed after they are loaded.
+ */
+public class GroupTables
+{
+    private HashMap    groupListData = new HashMap();
+    private double[][] unifacData    = new double[Constants.UNIFAC_GROUP_NUM + 1][Constants.UNIFAC_GROUP_NUM + 1];
+
+    // Groups of the components by compId, as { String[] names, int[] counts }
+    private HashMap compGroups = new HashMap();
+
+    /**
+     * Tables are only created by the methods which load them.
+     */
+    private GroupTables()
+    {
+    }
+
+    /**
+     * Loads the tables from the text files.
+     */
+    static GroupTables loadText()
+        throws VLEException
+    {
+        GroupTables tables = new GroupTables();
+
+        tables.loadGroupData();
+        tables.loadUnifacData();
+        tables.loadComponentGroupData();
+
+        return tables;
+    }
+
+    /**
+     * Reads the tables from the snapshot.
+     */
+    static GroupTables read(DataSnapshot snapshot)
+    {
+        int i = 0;
+        GroupData group = null;
+        GroupTables tables = new GroupTables();
+
+        for (i = 0; i < snapshot.getNumOfGroups(); i++)
+        {
+            group = snapshot.getGroup(i);
+            tables.groupListData.put(group.groupName, group);
+        }
+
+        for (i = 0; i < snapshot.getNumOfComponents(); i++)
+        {
+            if (snapshot.getGroupNames(i) != null)
+            {
+                tables.compGroups.put(new Integer(snapshot.getCompId(i)),
+                    new Object[] { snapshot.getGroupNames(i), snapshot.getGroupCounts(i) });
+            }
+        }
+
+        snapshot.readUnifacData(tables.unifacData);
+        return tables;
+    }
+
+    /**
+     * Returns the map of group names to GroupData.
+     */
+    public HashMap getGroups()
+    {
+        return groupListData;
+    }
+
+    /**
+     * Returns the UNIFAC group interaction parameters, indexed by the
+     * main group numbers.
+     */
+    public double[][] getUnifacData()
+    {
+        return unifacData;
+    }
+
+    /**
+     * Returns the names of the groups of a component, or null if they are
+     * not available.
+     */
+    public String[] getGroupNames(int compId)
+    {
+        Object[] groups = (Object[]) compGroups.get(new Integer(compId));
+
+        return (groups == null) ? null : (String[]) groups[0];
+    }
+
+    /**
+     * Returns the number of each group in a component, in the order of
+     * getGroupNames, or null if they are not available.
+     */
+    public int[] getGroupCounts(int compId)
+    {
+        Object[] groups = (Object[]) compGroups.get(new Integer(compId));
+
+        return (groups == null) ? null : (int[]) groups[1];
+    }
+
+    /**
+     * This method loads the data for list of the predefined groups
+     * for UNIFAC and UNIQUAC methods.
+     */
+    private void loadGroupData()
+        throws VLEException
+    {
+        GroupData data = null;
+        CSVReader reader = VLEDatabase.openDataFile(Constants.GROUP_DATA_FILE);
+
+        int colName = reader.getColumn("Name");
+        int colNo   = reader.getColumn("No");
+        int colK    = reader.getColumn("k");
+        int colQk   = reader.getColumn("qk");
+        int colRk   = reader.getColumn("rk");
+
+        try
+        {
+            while (reader.next())
+            {
+                data = new GroupData();
+
+                data.groupName  = reader.getString(colName);
+                data.uniGroupNo = reader.getInt(colNo);
+                data.k          = reader.getInt(colK);
+                data.qk         = VLEDatabase.readDouble(reader, colQk);
+                data.rk         = VLEDatabase.readDouble(reader, colRk);
+
+                groupListData.put(data.groupName, data);
+            }
+        }
+        catch (Exception ex)
+        {
+            throw VLEDatabase.dataFileError(Constants.GROUP_DATA_FILE, ex);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * This method loads the data for UNIFAC method.
+     */
+    private void loadUnifacData()
+        throws VLEException
+    {
+        int row = 0;
+        int col = 0;
+        int[] columns = new int[Constants.UNIFAC_GROUP_NUM + 1];
+        CSVReader reader = VLEDatabase.openDataFile(Constants.UNIFAC_DATA_FILE);
+
+        for (col = 1; col <= Constants.UNIFAC_GROUP_NUM; col++)
+            columns[col] = reader.getColumn(Integer.toString(col));
+
+        try
+        {
+            for (row = 1; row <= Constants.UNIFAC_GROUP_NUM; row++)
+            {
+                if (!reader.next())
+                    throw new EOFException();
+
+                for (col = 1; col <= Constants.UNIFAC_GROUP_NUM; col++)
+                    unifacData[row][col] = VLEDatabase.readDouble(reader, columns[col]);
+            }
+        }
+        catch (Exception ex)
+        {
+            throw VLEDatabase.dataFileError(Constants.UNIFAC_DATA_FILE, ex);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * This method loads the UNIFAC groups of the components. Each
+     * group is given as name:count, separated by spaces.
+     */
+    private void loadComponentGroupData()
+        throws VLEException
+    {
+        int i = 0;
+        int colon = 0;
+        String[] names = null;
+        int[] counts = null;
+        StringTokenizer tokenizer = null;
+        String token = null;
+        CSVReader reader = VLEDatabase.openDataFile(Constants.COMP_GROUP_FILE);
+
+        int colId     = reader.getColumn("ID");
+        int colGroups = reader.getColumn("Groups");
+
+        try
+        {
+            while (reader.next())
+            {
+                tokenizer = new StringTokenizer(reader.getString(colGroups));
+                names = new String[tokenizer.countTokens()];
+                counts = new int[names.length];
+
+                for (i = 0; i < names.length; i++)
+                {
+                    token = tokenizer.nextToken();
+                    colon = token.lastIndexOf(':');
+                    names[i] = token.substring(0, colon);
+                    counts[i] = Integer.parseInt(token.substring(colon + 1));
+                }
+
+                compGroups.put(new Integer(reader.getInt(colId)), new Object[] { names, counts });
+            }
+        }
+        catch (Exception ex)
+        {
+            throw VLEDatabase.dataFileError(Constants.COMP_GROUP_FILE, ex);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Implement this interface to receive the convergence record of every
+ * calculation done through a VLEContext.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+/**
+ * Implement this interface to receive the convergence record of every
+ * calculation done through a VLEContext.
+ */
+public interface ITelemetryListener
+{
+    /**
+     * Called when a calculation of the context has finished. The flash
+     * calculation for a single phase mixture ends without a result, and
+     * is not reported.
+     * @param operation One of BUBLP, DEWP, BUBLT, DEWT and FLASH
+     * @param result Result of the calculation, including its telemetry
+     */
+    public void calculationFinished(String operation, VLEResult result);
+}
@@ -0,0 +1,347 @@
+/*
+ * Store of the binary interaction parameters of the demo systems.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+import java.util.*;
+
+/**
+ * Store of the binary interaction parameters of the demo systems, found
+ * by the unordered pair of component IDs. The parameters are grouped by
+ * model, the part of their name before "-", and the values of a model
+ * are kept in one double array, a row per pair. A row is stored for the
+ * pair (lower ID, higher ID); for the reversed pair the parameters whose
+ * names end in 1 and 2 are swapped, a12 with a21 and v1 with v2. The
+ * pairs are found through an open addressing hash table, so that the
+ * parameters of all the pairs of a mixture are looked up in O(1) each,
+ * without boxing. The store is not changed after it is built.
+ */
+public class InteractionParams
+{
+    private final static long EMPTY = -1L;
+
+    private String[] models = null;
+    private String[][] paramNames = null;
+    private int[][] reversed = null;
+    private double[][] values = null;
+
+    // Hash table of the pairs, giving the row of each pair
+    private long[] keys = null;
+    private int[] rows = null;
+    private int numOfPairs = 0;
+
+    /**
+     * Builds the store from the demo data. If a pair is given more than
+     * once, the first one is kept.
+     * @param demoList List of DemoData
+     */
+    public InteractionParams(List demoList)
+    {
+        int i = 0;
+        int m = 0;
+        int k = 0;
+        int row = 0;
+        int capacity = 4;
+        boolean swap = false;
+        DemoData demo = null;
+        Double value = null;
+        TreeMap modelMap = new TreeMap();
+        Iterator iterator = null;
+        String name = null;
+        String model = null;
+
+        for (i = 0; i < demoList.size(); i++)
+        {
+            iterator = ((DemoData) demoList.get(i)).actParamMap.keySet().iterator();
+
+            while (iterator.hasNext())
+            {
+                name = (String) iterator.next();
+                model = getModel(name);
+
+                if (!modelMap.containsKey(model))
+                    modelMap.put(model, new TreeSet());
+
+                ((TreeSet) modelMap.get(model)).add(name);
+            }
+        }
+
+        models = (String[]) modelMap.keySet().toArray(new String[modelMap.size()]);
+        paramNames = new String[models.length][];
+        reversed = new int[models.length][];
+        values = new double[models.length][];
+
+        for (m = 0; m < models.length; m++)
+        {
+            paramNames[m] = (String[]) ((TreeSet) modelMap.get(models[m])).toArray(new String[0]);
+            reversed[m] = new int[paramNames[m].length];
+
+            for (k = 0; k < paramNames[m].length; k++)
+            {
+                reversed[m][k] = Arrays.asList(paramNames[m]).indexOf(reverse(paramNames[m][k]));
+
+                if (reversed[m][k] < 0)
+                    reversed[m][k] = k;
+            }
+
+            values[m] = new double[demoList.size() * paramNames[m].length];
+        }
+
+        while (capacity < 2 * demoList.size())
+            capacity *= 2;
+
+        keys = new long[capacity];
+        rows = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+
+        for (i = 0; i < demoList.size(); i++)
+        {
+            demo = (DemoData) demoList.get(i);
+
+            if (findRow(demo.compID1, demo.compID2) >= 0)
+                continue;
+
+            row = numOfPairs++;
+            insert(key(demo.compID1, demo.compID2), row);
+            swap = (demo.compID1 > demo.compID2);
+
+            for (m = 0; m < models.length; m++)
+            {
+                for (k = 0; k < paramNames[m].length; k++)
+                {
+                    value = (Double) demo.actParamMap.get(paramNames[m][k]);
+                    values[m][row * paramNames[m].length + (swap ? reversed[m][k] : k)] =
+                        (value == null) ? Constants.DOUBLE_NULL : value.doubleValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the model of a parameter, the part of its name before "-".
+     */
+    private static String getModel(String name)
+    {
+        int dash = name.indexOf('-');
+
+        return (dash < 0) ? name : name.substring(0, dash);
+    }
+
+    /**
+     * Returns the name of the parameter for the reversed pair, with 1 and
+     * 2 swapped in the digits at the end of the name.
+     */
+    private static String reverse(String name)
+    {
+        int i = name.length();
+        char[] chars = name.toCharArray();
+
+        while ((i > 0) && Character.isDigit(chars[i - 1]))
+        {
+            i--;
+
+            if (chars[i] == '1')
+                chars[i] = '2';
+            else if (chars[i] == '2')
+                chars[i] = '1';
+        }
+
+        return new String(chars);
+    }
+
+    private static long key(int compId1, int compId2)
+    {
+        int low = Math.min(compId1, compId2);
+        int high = Math.max(compId1, compId2);
+
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key, int mask)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h >>> 32) & mask;
+    }
+
+    private void insert(long key, int row)
+    {
+        int mask = keys.length - 1;
+        int slot = hash(key, mask);
+
+        while (keys[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+
+        keys[slot] = key;
+        rows[slot] = row;
+    }
+
+    /**
+     * Returns the row of the pair, or -1 if the pair is not in the store.
+     */
+    private int findRow(int compId1, int compId2)
+    {
+        long key = key(compId1, compId2);
+        int mask = keys.length - 1;
+        int slot = hash(key, mask);
+
+        while (keys[slot] != EMPTY)
+        {
+            if (keys[slot] == key)
+                return rows[slot];
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of pairs in the store.
+     */
+    public int getNumOfPairs()
+    {
+        return numOfPairs;
+    }
+
+    /**
+     * Returns the models, like "Wilson" and "NRTL".
+     */
+    public String[] getModels()
+    {
+        return (String[]) models.clone();
+    }
+
+    /**
+     * Returns the index of a model, or -1 if it has no parameters.
+     */
+    public int getModelIndex(String model)
+    {
+        return Arrays.asList(models).indexOf(model);
+    }
+
+    /**
+     * Returns the names of the parameters of a model, as in the demo
+     * data. The values of getValues are in this order.
+     */
+    public String[] getParamNames(int model)
+    {
+        return (String[]) paramNames[model].clone();
+    }
+
+    /**
+     * Returns whether the store has the parameters of the pair.
+     */
+    public boolean contains(int compId1, int compId2)
+    {
+        return findRow(compId1, compId2) >= 0;
+    }
+
+    /**
+     * Copies the parameters of a model for the pair, in the order of
+     * getParamNames. For the pair (2, 1) the value of a12 is the a21 of
+     * the pair (1, 2).
+     * @param result Array for the values, of the length of getParamNames
+     * @return false if the store does not have the pair
+     */
+    public boolean getValues(int model, int compId1, int compId2, double[] result)
+    {
+        int k = 0;
+        int n = paramNames[model].length;
+        int row = findRow(compId1, compId2);
+
+        if (row < 0)
+            return false;
+
+        if (compId1 <= compId2)
+        {
+            System.arraycopy(values[model], row * n, result, 0, n);
+        }
+        else
+        {
+            for (k = 0; k < n; k++)
+                result[k] = values[model][row * n + reversed[model][k]];
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the parameters of all the pairs of a system which are in the
+     * store, in a map of parameter names to Double. A system of two
+     * components gets the names of the demo data. In larger systems the
+     * names are numbered by the positions of the components, as in the
+     * parameter lists of the calculators: a12 of the pair (i, j) becomes
+     * aij, a21 becomes aji, v1 becomes vi and a name without a number,
+     * like NRTL-alpha, becomes NRTL-alphaij with i < j. Only the names
+     * which are already keys of the map are set.
+     * @param compIds IDs of the components of the system
+     * @param paramMap Map of parameter names to Double
+     * @return Number of pairs found in the store
+     */
+    public int fillParams(int[] compIds, Map paramMap)
+    {
+        int i = 0;
+        int j = 0;
+        int m = 0;
+        int k = 0;
+        int found = 0;
+        double[][] pairValues = new double[models.length][];
+        String name = null;
+
+        for (m = 0; m < models.length; m++)
+            pairValues[m] = new double[paramNames[m].length];
+
+        for (i = 0; i < compIds.length; i++)
+        {
+            for (j = i + 1; j < compIds.length; j++)
+            {
+                if (!contains(compIds[i], compIds[j]))
+                    continue;
+
+                found++;
+
+                for (m = 0; m < models.length; m++)
+                {
+                    getValues(m, compIds[i], compIds[j], pairValues[m]);
+
+                    for (k = 0; k < paramNames[m].length; k++)
+                    {
+                        name = (compIds.length == 2) ? paramNames[m][k]
+                            : systemName(paramNames[m][k], i, j, compIds.length);
+
+                        if (paramMap.containsKey(name))
+                            paramMap.put(name, new Double(pairValues[m][k]));
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Returns the name of a binary parameter for the pair (i, j) of a
+     * larger system, with i and j counted from 0. The numbering is the
+     * one of ActivityParams.
+     */
+    private static String systemName(String name, int i, int j, int numOfComps)
+    {
+        String sep = (numOfComps > 9) ? "-" : "";
+
+        if (name.endsWith("12"))
+            return name.substring(0, name.length() - 2) + (i + 1) + sep + (j + 1);
+        else if (name.endsWith("21"))
+            return name.substring(0, name.length() - 2) + (j + 1) + sep + (i + 1);
+        else if (name.endsWith("1"))
+            return name.substring(0, name.length() - 1) + (i + 1);
+        else if (name.endsWith("2"))
+            return name.substring(0, name.length() - 1) + (j + 1);
+        else
+            return name + (i + 1) + sep + (j + 1);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Options for the VLE solvers.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+/**
+ * Options for the VLE solvers. The options are passed with every call
+ * to VLEModel, so they must not be changed while a calculation using
+ * them is running.
+ */
+public class SolverOptions
+{
+    /** Successive substitution on the saturation temperature of the first component. */
+    public final static int TSOLVER_SUBSTITUTION = 0;
+    /** Safeguarded Newton iteration on ln(sum(K x)) = 0. */
+    public final static int TSOLVER_NEWTON       = 1;
+
+    /** Plain successive substitution. */
+    public final static int ACCEL_NONE     = 0;
+    /** Dominant eigenvalue extrapolation every few steps. */
+    public final static int ACCEL_DEM      = 1;
+    /** Bounded Wegstein steps for every variable. */
+    public final static int ACCEL_WEGSTEIN = 2;
+
+    /** Default limit on the iterations of every loop of a calculation. */
+    public final static int DEFAULT_MAX_ITERATIONS = 1000;
+
+    private int temperatureSolver = TSOLVER_SUBSTITUTION;
+    private int acceleration = ACCEL_NONE;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+    /**
+     * Returns the solver used for BUBL T and DEW T.
+     */
+    public int getTemperatureSolver()
+    {
+        return temperatureSolver;
+    }
+
+    /**
+     * Sets the solver used for BUBL T and DEW T.
+     * @param temperatureSolver TSOLVER_SUBSTITUTION or TSOLVER_NEWTON
+     */
+    public void setTemperatureSolver(int temperatureSolver)
+    {
+        this.temperatureSolver = temperatureSolver;
+    }
+
+    /**
+     * Returns the acceleration of the successive substitution loops.
+     */
+    public int getAcceleration()
+    {
+        return acceleration;
+    }
+
+    /**
+     * Sets the acceleration of the successive substitution loops in
+     * BUBL P, DEW P, BUBL T, DEW T and flash calculations.
+     * @param acceleration ACCEL_NONE, ACCEL_DEM or ACCEL_WEGSTEIN
+     */
+    public void setAcceleration(int acceleration)
+    {
+        this.acceleration = acceleration;
+    }
+
+    /**
+     * Returns the limit on the iterations of every loop of a calculation.
+     */
+    public int getMaxIterations()
+    {
+        return maxIterations;
+    }
+
+    /**
+     * Sets the limit on the iterations of every loop of a calculation.
+     * A calculation reaching it is stopped and reported as not converged
+     * in its SolverTelemetry.
+     */
+    public void setMaxIterations(int maxIterations)
+    {
+        this.maxIterations = maxIterations;
+    }
+}
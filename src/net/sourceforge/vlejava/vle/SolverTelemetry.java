@@ -0,0 +1,151 @@
+/*
+ * Convergence record of a VLE calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+/**
+ * Convergence record of a VLE calculation. It is filled in by VLEModel
+ * while the calculation runs and handed out with the VLEResult, after
+ * which it does not change any more.
+ */
+public class SolverTelemetry
+{
+    private int     outerIterations = 0;
+    private int     innerIterations = 0;
+    private int     activityCalls   = 0;
+    private int     fugacityCalls   = 0;
+    private double  residual        = 0;
+    private long    startTime       = 0;
+    private long    wallTime        = 0;
+    private boolean converged       = true;
+
+    /**
+     * Creates the record and starts the clock.
+     */
+    SolverTelemetry()
+    {
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Counts a call to the activity calculator.
+     */
+    void countActivityCall()
+    {
+        activityCalls++;
+    }
+
+    /**
+     * Counts a call to the fugacity calculator.
+     */
+    void countFugacityCall()
+    {
+        fugacityCalls++;
+    }
+
+    /**
+     * Adds the iterations of an inner loop.
+     */
+    void addInnerIterations(int iterations)
+    {
+        innerIterations += iterations;
+    }
+
+    /**
+     * Stops the clock and records the outcome of the calculation.
+     * @param iterations Number of outer iterations
+     * @param residual The quantity tested for convergence in the last iteration
+     * @param converged Whether the calculation has converged
+     */
+    void finish(int iterations, double residual, boolean converged)
+    {
+        this.outerIterations = iterations;
+        this.residual = residual;
+        this.converged = converged;
+        this.wallTime = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Returns the number of iterations of the main loop.
+     */
+    public int getOuterIterations()
+    {
+        return outerIterations;
+    }
+
+    /**
+     * Returns the total number of iterations of the inner loops, that is
+     * the activity coefficient loops of DEW P and DEW T, the composition
+     * loops of the Newton temperature solvers and the Rachford-Rice
+     * iterations of the flash.
+     */
+    public int getInnerIterations()
+    {
+        return innerIterations;
+    }
+
+    /**
+     * Returns the number of calls to the activity calculator.
+     */
+    public int getActivityCalls()
+    {
+        return activityCalls;
+    }
+
+    /**
+     * Returns the number of calls to the fugacity calculator.
+     */
+    public int getFugacityCalls()
+    {
+        return fugacityCalls;
+    }
+
+    /**
+     * Returns the quantity tested for convergence in the last iteration.
+     * It is the change of pressure in kPa for BUBL P and DEW P, the change
+     * of temperature in degree Celsius for BUBL T and DEW T, and the largest
+     * change of a mole fraction for flash.
+     */
+    public double getResidual()
+    {
+        return residual;
+    }
+
+    /**
+     * Returns the wall time of the calculation in nanoseconds.
+     */
+    public long getWallTime()
+    {
+        return wallTime;
+    }
+
+    /**
+     * Returns whether the calculation has converged. If not, it was
+     * stopped after the maximum number of iterations allowed by the
+     * solver options, and the result is only the last iterate.
+     */
+    public boolean isConverged()
+    {
+        return converged;
+    }
+
+    public String toString()
+    {
+        StringBuffer sbfOut = new StringBuffer("");
+
+        sbfOut.append("SolverTelemetry: ");
+        sbfOut.append("outerIterations = ").append(outerIterations).append(", ");
+        sbfOut.append("innerIterations = ").append(innerIterations).append(", ");
+        sbfOut.append("activityCalls = "  ).append(activityCalls  ).append(", ");
+        sbfOut.append("fugacityCalls = "  ).append(fugacityCalls  ).append(", ");
+        sbfOut.append("residual = "       ).append(residual       ).append(", ");
+        sbfOut.append("wallTime = "       ).append(wallTime       ).append(", ");
+        sbfOut.append("converged = "      ).append(converged);
+
+        return sbfOut.toString();
+    }
+}
@@ -10,6 +10,7 @@ package net.sourceforge.vlejava.vle;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -26,7 +27,10 @@ import net.sourceforge.vlejava.vle.calc.*;
  */
 public class VLE extends VLEFrame
 {
-    private final int NUM_OF_POINTS = 200;
+    private final static int NUM_OF_POINTS = 200;
+    private final static int DIAGRAM_TASK_POINTS = 16;
+    private final static ForkJoinPool diagramPool = new ForkJoinPool();
+    private final static int LOADER_THREADS = 3;
     private static VLE thisFrame = null;
 
     private final static int CHART_TYPE_PXY = 0;
@@ -36,9 +40,10 @@ public class VLE extends VLEFrame
     private final static int FRAC_TYPE_MIX  = 12;
 
     private int             numOfComps      = 0;
-    private ArrayList       compListData    = new ArrayList();
-    private HashMap         groupListData   = new HashMap();
-    private ArrayList       demoListData    = new ArrayList();
+    private ComponentIndex  compIndex       = null;
+    private InteractionParams pairParams    = null;
+    private VLEDatabase     database        = null;
+    private ArrayList       demoListData    = null;
     private HashMap         actParamMap     = new HashMap();
     private DecimalFormat   decimalFormat   = new DecimalFormat("#.#####");
     private ParamTableModel actParamModel   = null;
@@ -46,8 +51,6 @@ public class VLE extends VLEFrame
     private VLEContext      context         = null;
     private Listener        listener        = new Listener();
 
-    private double[][] unifacData = new double[Constants.UNIFAC_GROUP_NUM + 1][Constants.UNIFAC_GROUP_NUM + 1];
-
     /**
      * Main method.
      * @param args - command line arguments
@@ -56,7 +59,6 @@ public class VLE extends VLEFrame
     {
         try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch(Exception e) {}
 
-        VLEContext.initialize();
         thisFrame = new VLE();
     }
 
@@ -69,10 +71,10 @@ public class VLE extends VLEFrame
         setTitle(MessageHandler.getString("titleVLE"));
 
         context = new VLEContext();
-        loadProperties();
         initGUI();
 
         setVisible(true);
+        loadProperties();
     }
 
     /**
@@ -81,32 +83,15 @@ public class VLE extends VLEFrame
      */
     private void initGUI()
     {
-        int i;
-        ArrayList actMethods;
-        ArrayList fugMethods;
-        StringBuffer buffer;
-        DemoData demoData = null;
-        ComponentData compData = null;
-
-        actMethods = VLEContext.getActivityMethodList();
-        fugMethods = VLEContext.getFugacityMethodList();
-
-        for (i = 0; i < actMethods.size(); i++)
-        {
-            actMethodList.addItem(actMethods.get(i));
-        }
-
-        for (i = 0; i < fugMethods.size(); i++)
-        {
-            fugMethodList.addItem(fugMethods.get(i));
-        }
-
         compModel = new CompTableModel();
         compTable.setModel(compModel);
 
         actParamModel = new ParamTableModel();
         paramTable.setModel(actParamModel);
-        updateParamTable();
+
+        // Enabled when the data is loaded
+        fillButton.setEnabled(false);
+        addCompButton.setEnabled(false);
 
         compTable.getTableHeader().setReorderingAllowed(false);
         paramTable.getTableHeader().setReorderingAllowed(false);
@@ -139,245 +124,128 @@ public class VLE extends VLEFrame
 
     /**
      * This method loads various types of data from
-     * the properties files.
+     * the properties files. The calculation methods and the
+     * data files are loaded by a small pool of threads, while
+     * the frame is already shown. Each list of the frame is
+     * filled when its data has been loaded, and errors are
+     * shown to the user. The group data is loaded last, in
+     * the background, see VLEDatabase.
      */
     private void loadProperties()
     {
-        loadComponentData();
-        loadDemoData();
-        loadGroupData();
-        loadUnifacData();
-    }
-
-    /**
-     * This method loads the component data, which includes data
-     * like component name, critical data, Antoine's constants, etc.
-     */
-    private void loadComponentData()
-    {
-        int count = 0;
-        ComponentData data = null;
-        HashMap map = null;
-        ArrayList listData = null;
-        ArrayList tmpData = new ArrayList();
-
-        try
-        {
-            listData = CSVParser.parseCSVFile(Constants.COMP_DATA_FILE);
-        }
-        catch(IOException ioEx)
+        final ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS, new ThreadFactory()
         {
-            System.err.println(MessageHandler.getString("errFileRead") + ": "
-                + Constants.COMP_DATA_FILE);
-            System.exit(1);
-        }
-
-        for (count = 0; count < listData.size(); count++)
-        {
-            data = new ComponentData();
-            map = (HashMap) listData.get(count);
-
-            try
-            {
-                data.name   = (String) map.get("Name");
-                data.compId = Integer.parseInt((String) map.get("ID"));
-                data.Tc     = readDouble((String) map.get("Tc"));
-                data.Pc     = readDouble((String) map.get("Pc")) * 100;
-                data.Zc     = readDouble((String) map.get("Zc"));
-                data.omega  = readDouble((String) map.get("Omega"));
-                data.antA   = readDouble((String) map.get("Antoine-A"));
-                data.antB   = readDouble((String) map.get("Antoine-B"));
-                data.antC   = readDouble((String) map.get("Antoine-C"));
-
-                data.init();
-            }
-            catch (NumberFormatException ex)
+            public Thread newThread(Runnable task)
             {
-                System.err.println(MessageHandler.getString("errInvalidDataFile")
-                    + ": " + Constants.COMP_DATA_FILE);
-                System.exit(1);
-            }
-
-            compListData.add(data);
-        }
-    }
+                Thread thread = new Thread(task, "VLE loader");
 
-    /**
-     * This method loads the data for some predifined binary systems.
-     * It includes parameters for various methods like Margule, Virial,
-     * Redlich-Kwong, etc.
-     */
-    private void loadDemoData()
-    {
-        int count = 0;
-        DemoData data = null;
-        HashMap map = null;
-        ArrayList listData = null;
-        Iterator mapKeys = null;
-        String keyName = null;
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
 
-        try
+        loader.execute(new Runnable()
         {
-            listData = CSVParser.parseCSVFile(Constants.DEMO_DATA_FILE);
-        }
-        catch(IOException ioEx)
-        {
-            System.err.println(MessageHandler.getString("errFileRead") + ": "
-                + Constants.DEMO_DATA_FILE);
-            System.exit(1);
-        }
+            public void run()
+            {
+                try
+                {
+                    VLEContext.initialize();
 
-        demoListData.clear();
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            methodsLoaded();
+                        }
+                    });
+                }
+                catch (Exception ex)
+                {
+                    showLater(ex);
+                }
+            }
+        });
 
-        for (count = 0; count < listData.size(); count++)
+        loader.execute(new Runnable()
         {
-            data = new DemoData();
-            map = (HashMap) listData.get(count);
-            mapKeys = map.keySet().iterator();
-
-            try
+            public void run()
             {
-                while (mapKeys.hasNext())
+                try
                 {
-                    keyName = (String) mapKeys.next();
+                    final VLEDatabase data = VLEDatabase.load(loader);
 
-                    if (keyName.equals("Comp1"))
-                    {
-                        data.compID1 = Integer.parseInt((String) map.get(keyName));
-                    }
-                    else if (keyName.equals("Comp2"))
-                    {
-                        data.compID2 = Integer.parseInt((String) map.get(keyName));
-                    }
-                    else
+                    data.prefetchGroupTables(loader);
+
+                    SwingUtilities.invokeLater(new Runnable()
                     {
-                        data.actParamMap.put(keyName, new Double((String) map.get(keyName)));
-                    }
+                        public void run()
+                        {
+                            dataLoaded(data);
+                        }
+                    });
+                }
+                catch (Exception ex)
+                {
+                    showLater(ex);
+                }
+                finally
+                {
+                    // The tasks already given are still run
+                    loader.shutdown();
                 }
             }
-            catch (NumberFormatException ex)
-            {
-                System.err.println(MessageHandler.getString("errInvalidDataFile")
-                    + ": " + Constants.DEMO_DATA_FILE);
-                System.exit(1);
-            }
-
-            demoListData.add(data);
-        }
+        });
     }
 
     /**
-     * This method loads the data for list of the predefined groups
-     * for UNIQUAC method.
+     * Fills the lists of the calculation methods, once they are loaded.
      */
-    private void loadGroupData()
+    private void methodsLoaded()
     {
-        int count = 0;
-        GroupData data = null;
-        HashMap map = null;
-        ArrayList listData = null;
-
-        try
-        {
-            listData = CSVParser.parseCSVFile(Constants.GROUP_DATA_FILE);
-        }
-        catch(IOException ioEx)
-        {
-            System.err.println(MessageHandler.getString("errFileRead") + ": "
-                + Constants.GROUP_DATA_FILE);
-            System.exit(1);
-        }
-
-        groupListData.clear();
+        int i = 0;
+        ArrayList actMethods = VLEContext.getActivityMethodList();
+        ArrayList fugMethods = VLEContext.getFugacityMethodList();
 
-        for (count = 0; count < listData.size(); count++)
-        {
-            data = new GroupData();
-            map = (HashMap) listData.get(count);
+        for (i = 0; i < actMethods.size(); i++)
+            actMethodList.addItem(actMethods.get(i));
 
-            try
-            {
-                data.groupName  = (String) map.get("Name");
-                data.uniGroupNo = Integer.parseInt((String) map.get("No"));
-                data.k          = Integer.parseInt((String) map.get("k"));
-                data.qk         = readDouble((String) map.get("qk"));
-                data.rk         = readDouble((String) map.get("rk"));
-            }
-            catch (NumberFormatException ex)
-            {
-                System.err.println(MessageHandler.getString("errInvalidDataFile")
-                    + ": " + Constants.GROUP_DATA_FILE);
-                System.exit(1);
-            }
+        for (i = 0; i < fugMethods.size(); i++)
+            fugMethodList.addItem(fugMethods.get(i));
 
-            groupListData.put(data.groupName, data);
-        }
+        // Components may have been added before the methods were loaded
+        compDataChanged();
+        updateParamTable();
     }
 
     /**
-     * This method loads the data for UNIFAC method.
+     * Takes the loaded data, and lets the user add components.
      */
-    private void loadUnifacData()
+    private void dataLoaded(VLEDatabase data)
     {
-        int row = 0;
-        int col = 0;
-        HashMap map = null;
-        ArrayList listData = null;
-        String data = null;
-
-        try
-        {
-            listData = CSVParser.parseCSVFile(Constants.UNIFAC_DATA_FILE);
-        }
-        catch(IOException ioEx)
-        {
-            System.err.println(MessageHandler.getString("errFileRead") + ": "
-                + Constants.UNIFAC_DATA_FILE);
-            System.exit(1);
-        }
+        database     = data;
+        compIndex    = database.getComponentIndex();
+        pairParams   = database.getInteractionParams();
+        demoListData = database.getDemos();
 
-        try
-        {
-            for (row = 1; row <= Constants.UNIFAC_GROUP_NUM; row++)
-            {
-                map = (HashMap) listData.get(row - 1);
+        VLEContext.setDatabase(database);
 
-                for (col = 1; col <= Constants.UNIFAC_GROUP_NUM; col++)
-                {
-                    try
-                    {
-                        unifacData[row][col] = readDouble((String) map.get(Integer.toString(col)));
-                    }
-                    catch (NumberFormatException ex)
-                    {
-                        System.err.println(MessageHandler.getString("errInvalidDataFile")
-                            + ": " + Constants.UNIFAC_DATA_FILE);
-                        System.exit(1);
-                    }
-                }
-            }
-        }
-        catch (Exception ex)
-        {
-            System.err.println(MessageHandler.getString("errInvalidDataFile")
-                    + ": " + Constants.UNIFAC_DATA_FILE);
-            System.exit(1);
-        }
+        fillButton.setEnabled(true);
+        addCompButton.setEnabled(true);
     }
 
     /**
-     * Special method to parse strings for double values.
-     * It handles the null values.
+     * Shows an error of a loading thread to the user.
      */
-    private double readDouble(String value)
-        throws NumberFormatException
+    private static void showLater(final Exception ex)
     {
-        if (value == null)
-            return Constants.DOUBLE_NULL;
-        else if (value.toLowerCase().equals(Constants.NOT_AVAILABLE))
-            return Constants.DOUBLE_NULL;
-        else
-            return Double.parseDouble(value);
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                handleException(ex);
+            }
+        });
     }
 
     /**
@@ -403,11 +271,24 @@ public class VLE extends VLEFrame
     {
         int i = 0;
         Double value = null;
+        ArrayList paramList = null;
 
-        IActivityCalculator calc = VLEContext.getActivityCalculator(actMethodList.getSelectedIndex());
-        ArrayList paramList = calc.getParamList(numOfComps);
         actParamModel.setRowCount(0);
 
+        // The methods are not loaded yet
+        if (actMethodList.getItemCount() == 0)
+            return;
+
+        try
+        {
+            paramList = VLEContext.getActivityParamList(actMethodList.getSelectedIndex(), numOfComps);
+        }
+        catch (VLEException ex)
+        {
+            handleException(ex);
+            return;
+        }
+
         for (i = 0; i < paramList.size(); i++)
         {
             value = (Double) actParamMap.get(paramList.get(i));
@@ -417,18 +298,20 @@ public class VLE extends VLEFrame
 
     /**
      * This method is called when any component is added or removed.
+     * The parameters of the pairs found in the demo data are filled in.
      */
     private void compDataChanged()
     {
         int i = 0;
         int count = 0;
-        IActivityCalculator calc = null;
+        int[] compIds = null;
         ArrayList paramList = null;
 
         numOfComps = compTable.getRowCount();
         actParamMap.clear();
 
-        if (numOfComps < 2)
+        // The calculations need the methods as well
+        if ((numOfComps < 2) || (actMethodList.getItemCount() == 0))
         {
             BUBLPButton.setEnabled(false);
             DEWPButton.setEnabled(false);
@@ -460,12 +343,30 @@ public class VLE extends VLEFrame
 
         for (count = 0; count < actMethodList.getItemCount(); count++)
         {
-            calc = VLEContext.getActivityCalculator(count);
-            paramList = calc.getParamList(numOfComps);
+            try
+            {
+                paramList = VLEContext.getActivityParamList(count, numOfComps);
+            }
+            catch (VLEException ex)
+            {
+                handleException(ex);
+                return;
+            }
 
             for (i = 0; i < paramList.size(); i++)
                 actParamMap.put(paramList.get(i), null);
         }
+
+        if (pairParams == null)
+            return;
+
+        // Parameters of the pairs known from the demo data
+        compIds = new int[numOfComps];
+
+        for (i = 0; i < numOfComps; i++)
+            compIds[i] = ((ComponentData) compModel.getValueAt(i, 0)).compId;
+
+        pairParams.fillParams(compIds, actParamMap);
     }
 
     /**
@@ -608,7 +509,7 @@ public class VLE extends VLEFrame
         ComponentData compData = null;
 
         Object[] outValues = InputDialog.show(this, MessageHandler.getString("VLE"),
-            MessageHandler.getString("msgSelectComp") + ":", compListData.toArray(), true);
+            MessageHandler.getString("msgSelectComp") + ":", compIndex, true);
         if ((outValues == null) || (outValues.length == 0)) return;
 
         for (i = 0; i < outValues.length; i++)
@@ -659,9 +560,9 @@ public class VLE extends VLEFrame
             buffer = new StringBuffer("");
             demoData = (DemoData) demoListData.get(i);
 
-            buffer.append(((ComponentData) compListData.get(demoData.compID1)).name);
+            buffer.append(compIndex.getComponent(demoData.compID1).name);
             buffer.append(" / ");
-            buffer.append(((ComponentData) compListData.get(demoData.compID2)).name);
+            buffer.append(compIndex.getComponent(demoData.compID2).name);
 
             list[i] = new IDValue(i, buffer.toString());
         }
@@ -674,8 +575,8 @@ public class VLE extends VLEFrame
 
         compModel.setRowCount(0);
         demoData = (DemoData) demoListData.get(selectedValue.ID);
-        compModel.addRow(new Object[] { compListData.get(demoData.compID1), new Double(0), new Double(0) });
-        compModel.addRow(new Object[] { compListData.get(demoData.compID2), new Double(0), new Double(0) });
+        compModel.addRow(new Object[] { compIndex.getComponent(demoData.compID1), new Double(0), new Double(0) });
+        compModel.addRow(new Object[] { compIndex.getComponent(demoData.compID2), new Double(0), new Double(0) });
 
         compDataChanged();
         actParamMap.putAll(demoData.actParamMap);
@@ -705,6 +606,7 @@ public class VLE extends VLEFrame
 
             T = Double.parseDouble(temperature.getText());
             P = decimalFormat.format(context.calcBUBLP(T));
+            checkConverged();
             vapFracs = context.getVapourMoleFractions();
 
             buffer = new StringBuffer("");
@@ -756,6 +658,7 @@ public class VLE extends VLEFrame
 
             P = Double.parseDouble(pressure.getText());
             T = decimalFormat.format(context.calcBUBLT(P));
+            checkConverged();
             vapFracs = context.getVapourMoleFractions();
 
             buffer = new StringBuffer("");
@@ -807,6 +710,7 @@ public class VLE extends VLEFrame
 
             T = Double.parseDouble(temperature.getText());
             P = decimalFormat.format(context.calcDEWP(T));
+            checkConverged();
             liqFracs = context.getLiquidMoleFractions();
 
             buffer = new StringBuffer("");
@@ -858,6 +762,7 @@ public class VLE extends VLEFrame
 
             P = Double.parseDouble(pressure.getText());
             T = decimalFormat.format(context.calcDEWT(P));
+            checkConverged();
             liqFracs = context.getLiquidMoleFractions();
 
             buffer = new StringBuffer("");
@@ -886,6 +791,17 @@ public class VLE extends VLEFrame
         }
     }
 
+    /**
+     * Reports the last calculation of the context as an error if it has
+     * not converged, instead of showing its last iterate as the result.
+     */
+    private void checkConverged()
+        throws VLEException
+    {
+        if (!context.getLastResult().getTelemetry().isConverged())
+            throw new VLEException(MessageHandler.getString("errCalcNotConverged"));
+    }
+
     /**
      * Calculates the flash point compositions at given T and P.
      */
@@ -915,6 +831,7 @@ public class VLE extends VLEFrame
             T = Double.parseDouble(temperature.getText());
 
             vapFraction = context.calcFlashPoint(P, T);
+            checkConverged();
             liqFracs = context.getLiquidMoleFractions();
             vapFracs = context.getVapourMoleFractions();
 
@@ -1009,20 +926,22 @@ public class VLE extends VLEFrame
      * This method plots the Pxy or Txy diagram depending upon the values.
      */
     private void plotChart(int chartType, double PorT)
+        throws VLEException
     {
         int i = 0;
         boolean diffGoingDown = false;
         boolean azeoExists = false;
-        double BUBL = 0;
-        double DEW = 0;
+        double frac = 0;
         double prevDiff = 1E10;
         double diff = 1E10;
-        double[] liqMoleFracs = null;
-        double[] vapMoleFracs = null;
+        double[] BUBL = new double[NUM_OF_POINTS + 1];
+        double[] DEW = new double[NUM_OF_POINTS + 1];
+        boolean[] converged = new boolean[2 * (NUM_OF_POINTS + 1)];
         Dataset bublSet = null;
         Dataset dewSet = null;
         String comp1 = null;
         String comp2 = null;
+        VLEModel model = context.getModel();
         Point2D.Double azeotrope = new Point2D.Double();
         Point2D.Double x0 = new Point2D.Double();
         Point2D.Double x1 = new Point2D.Double();
@@ -1033,33 +952,39 @@ public class VLE extends VLEFrame
         bublSet.setLineColor(Color.red);
         dewSet.setLineColor(Color.green);
 
-        for(i = 0; i <= NUM_OF_POINTS; i++)
+        // Every point is independent of the others, so the bubble and dew
+        // curves are calculated in parallel and put together afterwards.
+        diagramPool.invoke(new DiagramTask(model, context.getSolverOptions(), chartType, PorT,
+            BUBL, DEW, converged, 0, 2 * (NUM_OF_POINTS + 1)));
+
+        // As for a single point, a curve is not drawn through last iterates
+        for (i = 0; i < converged.length; i++)
         {
-            liqMoleFracs = new double[] { (double) i / NUM_OF_POINTS, 1 - (double) i / NUM_OF_POINTS };
-            vapMoleFracs = new double[] { (double) i / NUM_OF_POINTS, 1 - (double) i / NUM_OF_POINTS };
+            if (!converged[i])
+                throw new VLEException(MessageHandler.getString("errCalcNotConverged"));
+        }
 
-            context.setLiquidMoleFractions(liqMoleFracs);
-            BUBL = (chartType == CHART_TYPE_PXY) ? context.calcBUBLP(PorT) : context.calcBUBLT(PorT);
-            bublSet.setValue(i, liqMoleFracs[0], BUBL);
+        for(i = 0; i <= NUM_OF_POINTS; i++)
+        {
+            frac = (double) i / NUM_OF_POINTS;
 
-            context.setVapourMoleFractions(vapMoleFracs);
-            DEW = (chartType == CHART_TYPE_PXY) ? context.calcDEWP(PorT) : context.calcDEWT(PorT);
-            dewSet.setValue(i, vapMoleFracs[0], DEW);
+            bublSet.setValue(i, frac, BUBL[i]);
+            dewSet.setValue(i, frac, DEW[i]);
 
             if (i == 0)
-                x0.setLocation(liqMoleFracs[0], BUBL);
+                x0.setLocation(frac, BUBL[i]);
 
             if (i == NUM_OF_POINTS)
-                x1.setLocation(liqMoleFracs[0], BUBL);
+                x1.setLocation(frac, BUBL[i]);
 
-            diff = Math.abs(BUBL - DEW);
+            diff = Math.abs(BUBL[i] - DEW[i]);
 
             if ((i != 0) && (i != NUM_OF_POINTS))
             {
                 if ((!azeoExists) && (diff < prevDiff))
                 {
                     diffGoingDown = true;
-                    azeotrope.setLocation(vapMoleFracs[0], DEW);
+                    azeotrope.setLocation(frac, DEW[i]);
                 }
                 else if (diffGoingDown)
                 {
@@ -1197,6 +1122,102 @@ public class VLE extends VLEFrame
         public void windowOpened(WindowEvent ev) {}
     }
 
+    /**
+     * Fork-join task for the points of Pxy and Txy diagrams. The task range
+     * covers the bubble points first and then the dew points, so both
+     * curves are split across the pool. Each point is written to its own
+     * slot, and so is whether it has converged. Within a task, every point
+     * starts from the extrapolation of the points before it. The ranges of
+     * the tasks depend only on the number of points, so the results are
+     * same as those of a serial run. The points are solved with the
+     * options of the context, as the single points are.
+     */
+    static class DiagramTask extends RecursiveAction
+    {
+        private VLEModel model = null;
+        private SolverOptions options = null;
+        private int chartType = 0;
+        private double PorT = 0;
+        private double[] BUBL = null;
+        private double[] DEW = null;
+        private boolean[] converged = null;
+        private int start = 0;
+        private int end = 0;
+
+        DiagramTask(VLEModel model, SolverOptions options, int chartType, double PorT,
+            double[] BUBL, double[] DEW, boolean[] converged, int start, int end)
+        {
+            this.model = model;
+            this.options = options;
+            this.chartType = chartType;
+            this.PorT = PorT;
+            this.BUBL = BUBL;
+            this.DEW = DEW;
+            this.converged = converged;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute()
+        {
+            int i = 0;
+            int mid = 0;
+            int numOfPoints = BUBL.length;
+            double[] fracs = null;
+            VLEResult result = null;
+            Continuation bublSweep = new Continuation(Continuation.SWEEP_LIQUID, true);
+            Continuation dewSweep = new Continuation(Continuation.SWEEP_VAPOUR, true);
+
+            if (end - start > DIAGRAM_TASK_POINTS)
+            {
+                mid = (start + end) >>> 1;
+                invokeAll(new DiagramTask(model, options, chartType, PorT, BUBL, DEW, converged, start, mid),
+                          new DiagramTask(model, options, chartType, PorT, BUBL, DEW, converged, mid, end));
+                return;
+            }
+
+            for (i = start; i < end; i++)
+            {
+                if (i < numOfPoints)
+                {
+                    fracs = new double[] { (double) i / NUM_OF_POINTS, 1 - (double) i / NUM_OF_POINTS };
+
+                    if (chartType == CHART_TYPE_PXY)
+                    {
+                        result = model.calcBUBLP(PorT, fracs, bublSweep.getGuess(fracs), options);
+                        BUBL[i] = result.getPressure();
+                    }
+                    else
+                    {
+                        result = model.calcBUBLT(PorT, fracs, bublSweep.getGuess(fracs), options);
+                        BUBL[i] = result.getTemperature();
+                    }
+
+                    bublSweep.addResult(result);
+                }
+                else
+                {
+                    fracs = new double[] { (double) (i - numOfPoints) / NUM_OF_POINTS, 1 - (double) (i - numOfPoints) / NUM_OF_POINTS };
+
+                    if (chartType == CHART_TYPE_PXY)
+                    {
+                        result = model.calcDEWP(PorT, fracs, dewSweep.getGuess(fracs), options);
+                        DEW[i - numOfPoints] = result.getPressure();
+                    }
+                    else
+                    {
+                        result = model.calcDEWT(PorT, fracs, dewSweep.getGuess(fracs), options);
+                        DEW[i - numOfPoints] = result.getTemperature();
+                    }
+
+                    dewSweep.addResult(result);
+                }
+
+                converged[i] = result.getTelemetry().isConverged();
+            }
+        }
+    }
+
     /**
      * TableModel implementation for activity parameters table.
      */
@@ -8,7 +8,6 @@
 package net.sourceforge.vlejava.vle;
 
 import java.util.*;
-import java.io.*;
 import net.sourceforge.vlejava.vle.calc.*;
 import net.sourceforge.vlejava.util.MessageHandler;
 
@@ -17,79 +16,91 @@ import net.sourceforge.vlejava.util.MessageHandler;
  */
 public class VLEContext
 {
-    private static ArrayList actMethodList = new ArrayList();
-    private static HashMap actMethodMap = new HashMap();
-    private static ArrayList fugMethodList = new ArrayList();
-    private static HashMap fugMethodMap = new HashMap();
+    private static CalculatorRegistry actRegistry = null;
+    private static CalculatorRegistry fugRegistry = null;
+    private static VLEDatabase database = null;
 
     private int activityMethod = -1;
     private int fugacityMethod = -1;
     private int numOfComps = 0;
+    private double temperature = 0;
     private double[] liqMoleFracs = null;
     private double[] vapMoleFracs = null;
     private ComponentData[] components = null;
     private Object[] actMethodParams = null;
-    private IActivityCalculator actCalculator = null;
-    private IFugacityCalculator fugCalculator = null;
+    private VLEModel model = null;
+    private VLEResult lastResult = null;
+    private SolverOptions options = new SolverOptions();
+    private ArrayList telemetryListeners = new ArrayList();
 
     /**
-     * Initialize the context for the application.
+     * Initialize the context for the application. The calculation methods
+     * are registered once here, see CalculatorRegistry.
      */
     public static void initialize()
     {
-        fillListAndMaps(Constants.ACTIVITY_MAP_FILE, actMethodList, actMethodMap);
-        fillListAndMaps(Constants.FUGACITY_MAP_FILE, fugMethodList, fugMethodMap);
+        actRegistry = new CalculatorRegistry(Constants.ACTIVITY_MAP_FILE,
+            IActivityCalculator.class, "errActCalcClassLoadFail");
+        fugRegistry = new CalculatorRegistry(Constants.FUGACITY_MAP_FILE,
+            IFugacityCalculator.class, "errFugCalcClassLoadFail");
     }
 
     /**
-     * Generic method to load the properties files.
+     * Returns the list of activity methods supported by application.
      */
-    private static void fillListAndMaps(String fileName, ArrayList list, HashMap map)
+    public static ArrayList getActivityMethodList()
     {
-        int count = 0;
-        String propName = null;
-        String value = null;
-        Enumeration enumeration = null;
-        Properties props = new Properties();
-
-        try
-        {
-            props.load(new FileInputStream(fileName));
-        }
-        catch(Exception ex)
-        {
-            System.out.println(MessageHandler.getString("errLoadFileFail") + ": " + fileName);
-            System.exit(2);
-        }
-
-        enumeration = props.propertyNames();
+        return actRegistry.getNames();
+    }
 
-        while (enumeration.hasMoreElements())
-        {
-            propName = (String) enumeration.nextElement();
-            value = (String) props.get(propName);
+    /**
+     * Returns the list of fugacity methods supported by application.
+     */
+    public static ArrayList getFugacityMethodList()
+    {
+        return fugRegistry.getNames();
+    }
 
-            list.add(value);
-            map.put(new Integer(count), propName);
+    /**
+     * Returns the parameter names of an activity method, without creating
+     * the calculator.
+     */
+    public static ArrayList getActivityParamList(int activityMethod, int numOfComps)
+        throws VLEException
+    {
+        return ((IActivityCalculator) actRegistry.getPrototype(activityMethod)).getParamList(numOfComps);
+    }
 
-            count++;
-        }
+    /**
+     * Sets the data loaded by the application, for the calculators which
+     * need it.
+     */
+    public static synchronized void setDatabase(VLEDatabase data)
+    {
+        database = data;
     }
 
     /**
-     * Returns the list of activity methods supported by application.
+     * Returns the data set by the application, or loads it from the data
+     * files if none has been set.
      */
-    public static ArrayList getActivityMethodList()
+    public static synchronized VLEDatabase getDatabase()
+        throws VLEException
     {
-        return actMethodList;
+        if (database == null)
+            database = VLEDatabase.load();
+
+        return database;
     }
 
     /**
-     * Returns the list of fugacity methods supported by application.
+     * Returns the group data of the UNIFAC and UNIQUAC methods. It is
+     * loaded on the first call, see VLEDatabase.getGroupTables.
      */
-    public static ArrayList getFugacityMethodList()
+    public static GroupTables getGroupTables()
+        throws VLEException
     {
-        return fugMethodList;
+        return getDatabase().getGroupTables();
     }
 
     /**
@@ -109,22 +120,24 @@ public class VLEContext
     }
 
     /**
-     * Sets the activity method for calculations.
+     * Sets the activity method for calculations. If the fugacity method
+     * is set as well, the model is built, so that a system the method has
+     * no data for is reported here.
      * @param method Method ID
      * @param params Optional parameter list for the methods
      */
     public void setActivityMethod(int method, Object[] params)
         throws VLEException
     {
-        activityMethod = method;
-        actMethodParams = params;
-
-        actCalculator = getActivityCalculator(activityMethod);
+        IActivityCalculator actCalculator = (IActivityCalculator) actRegistry.getPrototype(method);
 
         if ((!actCalculator.isNonBinarySystemAllowed()) && (numOfComps != 2))
             throw new VLEException(MessageHandler.getString("errBinActCalcNotAllow"));
 
-        actCalculator.setContext(this);
+        activityMethod = method;
+        actMethodParams = params;
+        model = null;
+        validateModel();
     }
 
     /**
@@ -136,15 +149,32 @@ public class VLEContext
     }
 
     /**
-     * Sets the fugacity method for calculations.
+     * Sets the fugacity method for calculations. If the activity method
+     * is set as well, the model is built, so that a system the method has
+     * no data for is reported here.
      * @param method Method ID
      */
     public void setFugacityMethod(int method)
+        throws VLEException
     {
+        // The model was built for this method when the activity method was set
+        if ((method == fugacityMethod) && (model != null))
+            return;
+
         fugacityMethod = method;
+        model = null;
+        validateModel();
+    }
 
-        fugCalculator = getFugacityCalculator(fugacityMethod);
-        fugCalculator.setContext(this);
+    /**
+     * Builds the model once the components and both methods are set. The
+     * calculators check the system while the model is built.
+     */
+    private void validateModel()
+        throws VLEException
+    {
+        if ((components != null) && (activityMethod >= 0) && (fugacityMethod >= 0))
+            getModel();
     }
 
     /**
@@ -162,6 +192,7 @@ public class VLEContext
     {
         components = compData;
         numOfComps = compData.length;
+        model = null;
         liqMoleFracs = new double[numOfComps];
         vapMoleFracs = new double[numOfComps];
     }
@@ -198,424 +229,238 @@ public class VLEContext
         liqMoleFracs = fractions;
     }
 
-
     /**
-     * Calculates the BUBL P at the given temperature.
+     * Returns the temperature in degree Celsius, for the calculators
+     * which are called without one.
      */
-    public double calcBUBLP(double T)
+    public double getTemperature()
     {
-        int i = 0;
-        double P = 0;
-        double Ptemp = 0;
-
-        double[] Psat = calcPSat(T);
-        double[] gamma = calculateActivity();
-        double[] phi = new double[numOfComps];
-
-        for (i = 0; i < numOfComps; i++)
-        {
-            phi[i] = 1;
-            P += liqMoleFracs[i] * gamma[i] * Psat[i];
-        }
-
-        do
-        {
-            Ptemp = P;
-            for (i = 0; i < numOfComps; i++)
-                vapMoleFracs[i] = liqMoleFracs[i] * gamma[i] * Psat[i] / phi[i] / P;
-
-            phi = calculateFugacity(T, P, Psat);
-
-            P = 0;
-            for (i = 0; i < numOfComps; i++)
-                P += liqMoleFracs[i] * gamma[i] * Psat[i] / phi[i];
-        }
-        while(Math.abs(P - Ptemp) > Constants.EPSILON);
-
-        return P;
+        return temperature;
     }
 
     /**
-     * Calculates the DEW P at the given temperature.
+     * Sets the temperature in degree Celsius, for the calculators
+     * which are called without one.
      */
-    public double calcDEWP(double T)
+    public void setTemperature(double T)
     {
-        int i = 0;
-        boolean flag = false;
-        double P = 0;
-        double Ptemp = 0;
-        double sum = 0;
-
-        double[] Psat = calcPSat(T);
-        double[] phi = new double[numOfComps];
-        double[] gamma = new double[numOfComps];
-        double[] tmpGamma = new double[numOfComps];
-
-        for (i = 0; i < numOfComps; i++)
-        {
-            phi[i] = 1;
-            gamma[i] = 1;
-            P += vapMoleFracs[i] * phi[i] / gamma[i] / Psat[i];
-        }
+        temperature = T;
+    }
 
-        P = 1 / P;
+    /**
+     * Returns the solver used for BUBL T and DEW T.
+     */
+    public int getTemperatureSolver()
+    {
+        return options.getTemperatureSolver();
+    }
 
-        do
-        {
-            Ptemp = P;
-            phi = calculateFugacity(T, P, Psat);
+    /**
+     * Sets the solver used for BUBL T and DEW T.
+     * @param solver SolverOptions.TSOLVER_SUBSTITUTION or SolverOptions.TSOLVER_NEWTON
+     */
+    public void setTemperatureSolver(int solver)
+    {
+        options.setTemperatureSolver(solver);
+    }
 
-            flag = true;
+    /**
+     * Returns the acceleration of the successive substitution loops.
+     */
+    public int getAcceleration()
+    {
+        return options.getAcceleration();
+    }
 
-            while (flag)
-            {
-                sum = 0;
+    /**
+     * Sets the acceleration of the successive substitution loops.
+     * @param acceleration One of the SolverOptions.ACCEL_* constants
+     */
+    public void setAcceleration(int acceleration)
+    {
+        options.setAcceleration(acceleration);
+    }
 
-                for (i = 0; i < numOfComps; i++)
-                {
-                    tmpGamma[i] = gamma[i];
-                    liqMoleFracs[i] = vapMoleFracs[i] * phi[i] * P / gamma[i] / Psat[i];
-                    sum += liqMoleFracs[i];
-                }
+    /**
+     * Returns the limit on the iterations of every loop of a calculation.
+     */
+    public int getMaxIterations()
+    {
+        return options.getMaxIterations();
+    }
 
-                for (i = 0; i < numOfComps; i++)
-                    liqMoleFracs[i] = liqMoleFracs[i] / sum;
+    /**
+     * Sets the limit on the iterations of every loop of a calculation.
+     */
+    public void setMaxIterations(int maxIterations)
+    {
+        options.setMaxIterations(maxIterations);
+    }
 
-                gamma = calculateActivity();
+    /**
+     * Returns the solver options of the context, for calculations made
+     * with its model. They are changed by the setters of this class.
+     */
+    public SolverOptions getSolverOptions()
+    {
+        return options;
+    }
 
-                for (i = 0; i < numOfComps; i++)
-                    if (Math.abs(gamma[i] - tmpGamma[i]) < Constants.EPSILON) flag = false;
-            }
+    /**
+     * Adds a listener to receive the telemetry of every calculation.
+     */
+    public void addTelemetryListener(ITelemetryListener listener)
+    {
+        telemetryListeners.add(listener);
+    }
 
-            P = 0;
-            for (i = 0; i < numOfComps; i++)
-                P += vapMoleFracs[i] * phi[i] / gamma[i] / Psat[i];
-            P = 1 / P;
-        }
-        while (Math.abs(P - Ptemp) > Constants.EPSILON);
+    /**
+     * Removes a telemetry listener.
+     */
+    public void removeTelemetryListener(ITelemetryListener listener)
+    {
+        telemetryListeners.remove(listener);
+    }
 
-        return P;
+    /**
+     * Returns the result of the last calculation. Its telemetry tells
+     * whether the calculation has converged, and how much work it took.
+     */
+    public VLEResult getLastResult()
+    {
+        return lastResult;
     }
 
     /**
-     * Calculates the BUBL T at the given pressure.
+     * Returns the immutable model of the current system. The model can be
+     * shared between threads and stays valid when the context is changed.
      */
-    public double calcBUBLT(double P)
+    public VLEModel getModel()
+        throws VLEException
     {
-        int i = 0;
-        double T = 0;
-        double Ttemp = 0;
-        double sum = 0;
+        if (model == null)
+            model = new VLEModel(components, activityMethod, actMethodParams, fugacityMethod);
 
-        double[] Tsat = calcTSat(P);
-        double[] Psat = new double[numOfComps];
-        double[] phi = new double[numOfComps];
-        double[] gamma = new double[numOfComps];
+        return model;
+    }
 
-        for (i = 0; i < numOfComps; i++)
+    /**
+     * Returns the model for the calculations. The model is built and
+     * validated when the methods are set after the components, so failure
+     * here only comes from a context whose methods were not set again.
+     */
+    private VLEModel currentModel()
+    {
+        try
         {
-            phi[i] = 1;
-            gamma[i] = 1;
-            T += liqMoleFracs[i] * Tsat[i];
+            return getModel();
         }
-
-        Psat = calcPSat(T);
-        gamma = calculateActivity();
-
-        for (i = 0; i < numOfComps; i++)
-            sum += liqMoleFracs[i] * gamma[i] * Psat[i] / phi[i] / Psat[0];
-        Psat[0] = P / sum;
-
-        do
+        catch (VLEException ex)
         {
-            Ttemp = T;
-            Psat = calcPSat(T);
-
-            for (i = 0; i < numOfComps; i++)
-                vapMoleFracs[i] = liqMoleFracs[i] * gamma[i] * Psat[i] / phi[i] / P;
-
-            gamma = calculateActivity();
-            phi = calculateFugacity(T, P, Psat);
-
-            sum = 0;
-            for (i = 0; i < numOfComps; i++)
-                sum += liqMoleFracs[i] * gamma[i] * Psat[i] / phi[i] / Psat[0];
-            Psat[0] = P / sum;
-
-            T = calcTSat(Psat[0])[0];
+            throw new IllegalStateException(ex.getMessage());
         }
-        while (Math.abs(T - Ttemp) > Constants.EPSILON);
-
-        return T;
     }
 
     /**
-     * Calculates the DEW T at the given pressure.
+     * Calculates the BUBL P at the given temperature.
      */
-    public double calcDEWT(double P)
+    public double calcBUBLP(double T)
     {
-        int i = 0;
-        boolean flag = false;
-        double T = 0;
-        double Ttemp = 0;
-        double sum = 0;
-
-        double[] Tsat = calcTSat(P);
-        double[] Psat = new double[numOfComps];
-        double[] phi = new double[numOfComps];
-        double[] gamma = new double[numOfComps];
-        double[] tmpGamma = new double[numOfComps];
-
-        for (i = 0; i < numOfComps; i++)
-        {
-            phi[i] = 1;
-            gamma[i] = 1;
-            T += vapMoleFracs[i] * Tsat[i];
-        }
-
-        Psat = calcPSat(T);
-
-        for (i = 0; i < numOfComps; i++)
-            sum += vapMoleFracs[i] * phi[i] * Psat[0] / gamma[i] / Psat[i];
-        Psat[0] = P * sum;
-        T = calcTSat(Psat[0])[0];
-
-        Psat = calcPSat(T);
-        phi = calculateFugacity(T, P, Psat);
-
-        for (i = 0; i < numOfComps; i++)
-            liqMoleFracs[i] = vapMoleFracs[i] * phi[i] * P / gamma[i] / Psat[0];
-        gamma = calculateActivity();
-
-        sum = 0;
-        for (i = 0; i < numOfComps; i++)
-            sum += vapMoleFracs[i] * phi[i] * Psat[0] / gamma[i] / Psat[i];
-        Psat[0] = P * sum;
-        T = calcTSat(Psat[0])[0];
-
-        do
-        {
-            Ttemp = T;
-            Psat = calcPSat(T);
-            phi = calculateFugacity(T, P, Psat);
-
-            flag = true;
-
-            while (flag)
-            {
-                sum = 0;
-
-                for (i = 0; i < numOfComps; i++)
-                {
-                    tmpGamma[i] = gamma[i];
-                    liqMoleFracs[i] = vapMoleFracs[i] * phi[i] * P / gamma[i] / Psat[i];
-                    sum += liqMoleFracs[i];
-                }
-
-                for (i = 0; i < numOfComps; i++)
-                    liqMoleFracs[i] = liqMoleFracs[i] / sum;
+        VLEResult result = currentModel().calcBUBLP(T, liqMoleFracs, null, options);
 
-                gamma = calculateActivity();
-
-                for (i = 0; i < numOfComps; i++)
-                    if (Math.abs(gamma[i] - tmpGamma[i]) < Constants.EPSILON) flag = false;
-            }
-
-            sum = 0;
-            for (i = 0; i < numOfComps; i++)
-                sum += vapMoleFracs[i] * phi[i] * Psat[0] / gamma[i] / Psat[i];
-            Psat[0] = P * sum;
-            T = calcTSat(Psat[0])[0];
-        }
-        while (Math.abs(T - Ttemp) > Constants.EPSILON);
-
-        return T;
+        copyFractions(result.getVapourMoleFractions(), vapMoleFracs);
+        setLastResult("BUBLP", result);
+        return result.getPressure();
     }
 
     /**
-     * Calculates the flash point compositions at given P and T.
+     * Calculates the DEW P at the given temperature.
      */
-    public double calcFlashPoint(double P, double T)
-        throws VLEException
+    public double calcDEWP(double T)
     {
-        boolean flag = true;
-        int i = 0;
-        double bublP = 0;
-        double dewP = 0;
-        double vapFraction = 0;
-        double vapFracTemp = 0;
-        double f = 0;
-        double df = 0;
-        double sum = 0;
-        double[] k = new double[numOfComps];
-        double[] mixMoleFracs = new double[numOfComps];
-        double[] liqMoleFracsTemp = new double[numOfComps];
-        double[] vapMoleFracsTemp = new double[numOfComps];
-        double[] Psat = new double[numOfComps];
-        double[] phi = new double[numOfComps];
-        double[] gamma = new double[numOfComps];
-
-        for (i = 0; i < numOfComps; i++)
-            mixMoleFracs[i] = liqMoleFracs[i];
-        bublP = calcBUBLP(T);
-
-        for (i = 0; i < numOfComps; i++)
-            vapMoleFracs[i] = mixMoleFracs[i];
-        dewP = calcDEWP(T);
-
-        if (P > bublP)
-            throw new VLEException(MessageHandler.getString("errMixSuperHeated") + " "
-                + MessageHandler.getString("errFlashCalcNP"));
-
-        if (P < dewP)
-            throw new VLEException(MessageHandler.getString("errMixSubCooled") + " "
-                + MessageHandler.getString("errFlashCalcNP"));
-
-        for (i = 0; i < numOfComps; i++)
-        {
-            phi[i] = 1;
-            liqMoleFracs[i] = mixMoleFracs[i];
-            vapMoleFracs[i] = mixMoleFracs[i];
-        }
+        VLEResult result = currentModel().calcDEWP(T, vapMoleFracs, null, options);
 
-        Psat = calcPSat(T);
-        gamma = calculateActivity();
-        phi = calculateFugacity(T, P, Psat);
-        vapFraction = 0.5;
+        copyFractions(result.getLiquidMoleFractions(), liqMoleFracs);
+        setLastResult("DEWP", result);
+        return result.getPressure();
+    }
 
-        while (flag)
-        {
-            vapFracTemp = vapFraction;
-
-            for (i = 0; i < numOfComps; i++)
-            {
-                liqMoleFracsTemp[i] = liqMoleFracs[i];
-                vapMoleFracsTemp[i] = vapMoleFracs[i];
-                k[i] = gamma[i] * Psat[i] / phi[i] / P;
-            }
-
-            f = 0;
-            df = 0;
-
-            for (i = 0; i < numOfComps; i++)
-            {
-                f += mixMoleFracs[i] * (k[i] - 1) / (1 + vapFraction * (k[i] - 1));
-                df -= mixMoleFracs[i] * (k[i] - 1) * (k[i] - 1) / (1 + vapFraction * (k[i] - 1)) / (1 + vapFraction * (k[i] - 1));
-            }
-
-            vapFraction -= f / df;
-            sum = 0;
-
-            for (i = 0; i < numOfComps; i++)
-            {
-                liqMoleFracs[i] = mixMoleFracs[i] / (1 + vapFraction * (k[i] - 1));
-                vapMoleFracs[i] = k[i] * liqMoleFracs[i];
-                sum += Math.abs(liqMoleFracs[i] - liqMoleFracsTemp[i]) + Math.abs(vapMoleFracs[i] - vapMoleFracsTemp[i]);
-            }
-
-            gamma = calculateActivity();
-            phi = calculateFugacity(T, P, Psat);
-
-            if ((Math.abs(vapFraction - vapFracTemp) < Constants.EPSILON) && (sum < Constants.EPSILON))
-                flag = false;
-        }
+    /**
+     * Calculates the BUBL T at the given pressure.
+     */
+    public double calcBUBLT(double P)
+    {
+        VLEResult result = currentModel().calcBUBLT(P, liqMoleFracs, null, options);
 
-        return vapFraction;
+        copyFractions(result.getVapourMoleFractions(), vapMoleFracs);
+        setLastResult("BUBLT", result);
+        return result.getTemperature();
     }
 
     /**
-     * Calculates the saturation (vapour) pressure at given temperature
-     * using Antoine Equation.
+     * Calculates the DEW T at the given pressure.
      */
-    private double[] calcPSat(double T)
+    public double calcDEWT(double P)
     {
-        double[] Psat = new double[numOfComps];
-
-        for (int i = 0; i < numOfComps; i++)
-        {
-            ComponentData comp = components[i];
-            Psat[i] = Constants.KPA_PER_MMHG * Math.pow(10, comp.antA - comp.antB / (comp.antC + T));
-        }
+        VLEResult result = currentModel().calcDEWT(P, vapMoleFracs, null, options);
 
-        return Psat;
+        copyFractions(result.getLiquidMoleFractions(), liqMoleFracs);
+        setLastResult("DEWT", result);
+        return result.getTemperature();
     }
 
     /**
-     * Calculates the saturation temperature at given pressure
-     * using Antoine Equation.
+     * Calculates the flash point compositions at given P and T.
      */
-    private double[] calcTSat(double P)
+    public double calcFlashPoint(double P, double T)
+        throws VLEException
     {
-        double[] Tsat = new double[numOfComps];
-
-        for (int i = 0; i < numOfComps; i++)
-        {
-            ComponentData comp = components[i];
-            Tsat[i] = comp.antB / (comp.antA - Math.log(P / Constants.KPA_PER_MMHG) / Math.log(10)) - comp.antC;
-        }
+        VLEResult result = getModel().calcFlashPoint(P, T, liqMoleFracs, options);
 
-        return Tsat;
+        copyFractions(result.getLiquidMoleFractions(), liqMoleFracs);
+        copyFractions(result.getVapourMoleFractions(), vapMoleFracs);
+        setLastResult("FLASH", result);
+        return result.getVapourFraction();
     }
 
     /**
-     * Calculates the activity coefficient depending upon the currently
-     * selected activity method.
+     * Keeps the result of the calculation and publishes it to the
+     * telemetry listeners.
      */
-    private double[] calculateActivity()
+    private void setLastResult(String operation, VLEResult result)
     {
-        return actCalculator.calculateActivity(actMethodParams);
+        lastResult = result;
+
+        for (int i = 0; i < telemetryListeners.size(); i++)
+            ((ITelemetryListener) telemetryListeners.get(i)).calculationFinished(operation, result);
     }
 
     /**
-     * Calculates the fugacity coefficient depending upon the currently
-     * selected fugacity method.
+     * Copies the calculated mole fractions into the arrays of the context,
+     * so that the arrays handed out earlier see the results.
      */
-    private double[] calculateFugacity(double T, double P, double[] Psat)
+    private void copyFractions(double[] from, double[] to)
     {
-        return fugCalculator.calculateFugacity(T, P, Psat);
+        System.arraycopy(from, 0, to, 0, numOfComps);
     }
 
     /**
-     * Returns the instance of actual activity calculator class
+     * Returns a new instance of actual activity calculator class
      * given the method ID.
      */
     public static IActivityCalculator getActivityCalculator(int activityMethod)
+        throws VLEException
     {
-        IActivityCalculator calculator = null;
-        String className = (String) actMethodMap.get(new Integer(activityMethod));
-
-        try
-        {
-            calculator = (IActivityCalculator) Class.forName(className).newInstance();
-        }
-        catch (Exception ex)
-        {
-            System.out.println(MessageHandler.getString("errActCalcClassLoadFail") + ": " + className);
-            System.exit(3);
-        }
-
-        return calculator;
+        return (IActivityCalculator) actRegistry.create(activityMethod);
     }
 
     /**
-     * Returns the instance of actual fugacity calculator class
+     * Returns a new instance of actual fugacity calculator class
      * given the method ID.
      */
     public static IFugacityCalculator getFugacityCalculator(int fugacityMethod)
+        throws VLEException
     {
-        IFugacityCalculator calculator = null;
-        String className = (String) fugMethodMap.get(new Integer(fugacityMethod));
-
-        try
-        {
-            calculator = (IFugacityCalculator) Class.forName(className).newInstance();
-        }
-        catch (Exception ex)
-        {
-            System.out.println(MessageHandler.getString("errFugCalcClassLoadFail") + ": " + className);
-            System.exit(3);
-        }
-
-        return calculator;
+        return (IFugacityCalculator) fugRegistry.create(fugacityMethod);
     }
 }
@@ -0,0 +1,368 @@
+/*
+ * Data of the components, demo systems and UNIFAC groups.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import net.sourceforge.vlejava.util.*;
+
+/**
+ * Data of the components, demo systems and UNIFAC groups, loaded from the
+ * data files. The class has no user interface, so it can be used by
+ * calculations which run without the application window. The data is
+ * read from the binary snapshot when it is current, otherwise from the
+ * text files. The group data is only needed by the group contribution
+ * methods, so it is loaded on the first call of getGroupTables, or in the
+ * background by prefetchGroupTables. When the snapshot is not current, it
+ * is written again once the group data has been loaded as well.
+ */
+public class VLEDatabase
+{
+    /** Data files the snapshot is compiled from. */
+    final static String[] SOURCE_FILES = {
+        Constants.COMP_DATA_FILE, Constants.DEMO_DATA_FILE, Constants.GROUP_DATA_FILE,
+        Constants.UNIFAC_DATA_FILE, Constants.COMP_GROUP_FILE };
+
+    private ArrayList      compListData = new ArrayList();
+    private ArrayList      demoListData = new ArrayList();
+    private ComponentIndex compIndex    = null;
+    private InteractionParams pairParams = null;
+
+    // Snapshot the data was read from, or the stamps of the text files
+    private DataSnapshot snapshot = null;
+    private long[]       stamps   = null;
+
+    private volatile GroupTables groupTables = null;
+
+    /**
+     * Loads the data, from the snapshot if it is current.
+     */
+    public static VLEDatabase load()
+        throws VLEException
+    {
+        return load(null);
+    }
+
+    /**
+     * Loads the data, from the snapshot if it is current. The text files
+     * of the components and the demo systems do not depend on each other,
+     * so the demo data is read by a task of the executor while the calling
+     * thread reads the components. If the executor has not started the
+     * task by then, the calling thread runs it, so the executor may be
+     * busy or have a single thread.
+     * @param executor Executor for the demo data, or null to read the
+     *        files one after the other
+     */
+    public static VLEDatabase load(Executor executor)
+        throws VLEException
+    {
+        int i = 0;
+        final VLEDatabase database = new VLEDatabase();
+        FutureTask demoTask = null;
+
+        database.stamps = DataSnapshot.getStamps(SOURCE_FILES);
+
+        try
+        {
+            database.snapshot = DataSnapshot.open(Constants.SNAPSHOT_FILE, database.stamps);
+        }
+        catch (IOException ex)
+        {
+            // The snapshot is written again from the text files
+        }
+
+        if (database.snapshot == null)
+        {
+            demoTask = new FutureTask(new Callable()
+            {
+                public Object call()
+                    throws VLEException
+                {
+                    database.loadDemoData();
+                    return null;
+                }
+            });
+
+            if (executor != null)
+                executor.execute(demoTask);
+
+            database.loadComponentData();
+
+            // Does nothing if the task has been started by the executor
+            demoTask.run();
+            waitFor(demoTask);
+        }
+        else
+        {
+            for (i = 0; i < database.snapshot.getNumOfComponents(); i++)
+                database.compListData.add(database.snapshot.getComponent(i));
+
+            for (i = 0; i < database.snapshot.getNumOfDemos(); i++)
+                database.demoListData.add(database.snapshot.getDemo(i));
+        }
+
+        database.compIndex = new ComponentIndex(database.compListData);
+        database.pairParams = new InteractionParams(database.demoListData);
+
+        return database;
+    }
+
+    /**
+     * Returns the list of ComponentData.
+     */
+    public ArrayList getComponents()
+    {
+        return compListData;
+    }
+
+    /**
+     * Returns the index to find the components by ID or name.
+     */
+    public ComponentIndex getComponentIndex()
+    {
+        return compIndex;
+    }
+
+    /**
+     * Returns the list of DemoData.
+     */
+    public ArrayList getDemos()
+    {
+        return demoListData;
+    }
+
+    /**
+     * Returns the interaction parameters of the demo systems, by pair.
+     */
+    public InteractionParams getInteractionParams()
+    {
+        return pairParams;
+    }
+
+    /**
+     * Returns the group data, loading it on the first call. Any number of
+     * threads may call this method, the data is loaded only once.
+     */
+    public GroupTables getGroupTables()
+        throws VLEException
+    {
+        GroupTables tables = groupTables;
+
+        if (tables != null)
+            return tables;
+
+        synchronized (this)
+        {
+            if (groupTables != null)
+                return groupTables;
+
+            if (snapshot != null)
+            {
+                tables = GroupTables.read(snapshot);
+            }
+            else
+            {
+                tables = GroupTables.loadText();
+
+                // The snapshot only saves time, so the data is good without it
+                try
+                {
+                    DataSnapshot.write(Constants.SNAPSHOT_FILE, stamps, this, tables);
+                }
+                catch (IOException ex)
+                {
+                }
+            }
+
+            groupTables = tables;
+            return tables;
+        }
+    }
+
+    /**
+     * Starts loading the group data in the background, so that it is
+     * ready when a group contribution method is first used. An error is
+     * not reported here, but again by getGroupTables.
+     */
+    public void prefetchGroupTables(Executor executor)
+    {
+        executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    getGroupTables();
+                }
+                catch (VLEException ex)
+                {
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for a loading task, and throws its exception.
+     */
+    private static void waitFor(Future task)
+        throws VLEException
+    {
+        try
+        {
+            task.get();
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof VLEException)
+                throw (VLEException) ex.getCause();
+
+            throw new VLEException(ex.getCause().toString());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new VLEException(ex.toString());
+        }
+    }
+
+    /**
+     * This method loads the component data, which includes data
+     * like component name, critical data, Antoine's constants, etc.
+     */
+    private void loadComponentData()
+        throws VLEException
+    {
+        ComponentData data = null;
+        CSVReader reader = openDataFile(Constants.COMP_DATA_FILE);
+
+        int colName = reader.getColumn("Name");
+        int colId   = reader.getColumn("ID");
+        int colTc   = reader.getColumn("Tc");
+        int colPc   = reader.getColumn("Pc");
+        int colZc   = reader.getColumn("Zc");
+        int colOm   = reader.getColumn("Omega");
+        int colAntA = reader.getColumn("Antoine-A");
+        int colAntB = reader.getColumn("Antoine-B");
+        int colAntC = reader.getColumn("Antoine-C");
+
+        try
+        {
+            while (reader.next())
+            {
+                data = new ComponentData();
+
+                data.name   = reader.getString(colName);
+                data.compId = reader.getInt(colId);
+                data.Tc     = readDouble(reader, colTc);
+                data.Pc     = readDouble(reader, colPc) * 100;
+                data.Zc     = readDouble(reader, colZc);
+                data.omega  = readDouble(reader, colOm);
+                data.antA   = readDouble(reader, colAntA);
+                data.antB   = readDouble(reader, colAntB);
+                data.antC   = readDouble(reader, colAntC);
+
+                data.init();
+                compListData.add(data);
+            }
+        }
+        catch (Exception ex)
+        {
+            throw dataFileError(Constants.COMP_DATA_FILE, ex);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * This method loads the data for some predifined binary systems.
+     * It includes parameters for various methods like Margule, Virial,
+     * Redlich-Kwong, etc.
+     */
+    private void loadDemoData()
+        throws VLEException
+    {
+        int col = 0;
+        DemoData data = null;
+        CSVReader reader = openDataFile(Constants.DEMO_DATA_FILE);
+        String[] header = reader.getHeader();
+
+        int colComp1 = reader.getColumn("Comp1");
+        int colComp2 = reader.getColumn("Comp2");
+
+        try
+        {
+            while (reader.next())
+            {
+                data = new DemoData();
+                data.compID1 = reader.getInt(colComp1);
+                data.compID2 = reader.getInt(colComp2);
+
+                for (col = 0; col < header.length; col++)
+                {
+                    if ((col != colComp1) && (col != colComp2))
+                        data.actParamMap.put(header[col], new Double(reader.getDouble(col)));
+                }
+
+                demoListData.add(data);
+            }
+        }
+        catch (Exception ex)
+        {
+            throw dataFileError(Constants.DEMO_DATA_FILE, ex);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Opens a data file and reads the names of its columns.
+     */
+    static CSVReader openDataFile(String fileName)
+        throws VLEException
+    {
+        try
+        {
+            return new CSVReader(new FileReader(fileName));
+        }
+        catch(IOException ioEx)
+        {
+            throw new VLEException(MessageHandler.getString("errFileRead") + ": " + fileName);
+        }
+    }
+
+    /**
+     * Returns the exception for an error in a data file.
+     */
+    static VLEException dataFileError(String fileName, Exception ex)
+    {
+        if (ex instanceof IOException)
+            return new VLEException(MessageHandler.getString("errFileRead") + ": " + fileName);
+        else
+            return new VLEException(MessageHandler.getString("errInvalidDataFile") + ": " + fileName);
+    }
+
+    /**
+     * Special method to parse fields for double values.
+     * It handles the null values.
+     */
+    static double readDouble(CSVReader reader, int column)
+        throws NumberFormatException
+    {
+        if (reader.isNull(column))
+            return Constants.DOUBLE_NULL;
+        else if (reader.equalsIgnoreCase(column, Constants.NOT_AVAILABLE))
+            return Constants.DOUBLE_NULL;
+        else
+            return reader.getDouble(column);
+    }
+}
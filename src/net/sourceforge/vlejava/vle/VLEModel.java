@@ -0,0 +1,1608 @@
+/*
+ * Immutable model of a mixture and the calculation methods.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+import net.sourceforge.vlejava.vle.calc.*;
+import net.sourceforge.vlejava.util.MathUtils;
+import net.sourceforge.vlejava.util.MessageHandler;
+
+/**
+ * Immutable model of a mixture and the calculation methods.
+ * <p>
+ * Unlike VLEContext, the compositions are passed with every call and
+ * the results are returned as VLEResult objects, so one model can serve
+ * any number of calculations from different threads at the same time.
+ * Calculators implementing IReentrantActivityCalculator and
+ * IReentrantFugacityCalculator are called without locking. Other
+ * calculators read the compositions back from their context, so the
+ * calls to them are serialized. With calculators implementing the
+ * IBuffered variants of these interfaces the iterations of the solvers
+ * do not allocate memory.
+ */
+public class VLEModel
+{
+    private final static double MAX_NEWTON_STEP = 25;
+    private final static int MAX_INNER_ITERATIONS = 100;
+    private final static double NUMERICAL_STEP = 1E-5;
+
+    private final int numOfComps;
+    private final int activityMethod;
+    private final int fugacityMethod;
+    private final ComponentData[] components;
+    private final Object[] actMethodParams;
+    private final VLEContext hostContext;
+    private final IActivityCalculator actCalculator;
+    private final IFugacityCalculator fugCalculator;
+    private final IReentrantActivityCalculator reentrantActCalculator;
+    private final IReentrantFugacityCalculator reentrantFugCalculator;
+    private final IBufferedActivityCalculator bufferedActCalculator;
+    private final IBufferedFugacityCalculator bufferedFugCalculator;
+    private final IDifferentiableActivityCalculator diffActCalculator;
+    private final IDifferentiableFugacityCalculator diffFugCalculator;
+    private final IBatchActivityCalculator batchActCalculator;
+    private final IBatchFugacityCalculator batchFugCalculator;
+
+    /**
+     * Creates the model.
+     * @param compData Components in the system
+     * @param activityMethod Activity method ID
+     * @param params Parameter list for the activity method
+     * @param fugacityMethod Fugacity method ID
+     */
+    public VLEModel(ComponentData[] compData, int activityMethod, Object[] params,
+        int fugacityMethod)
+        throws VLEException
+    {
+        this.components = (ComponentData[]) compData.clone();
+        this.numOfComps = components.length;
+        this.activityMethod = activityMethod;
+        this.fugacityMethod = fugacityMethod;
+        this.actMethodParams = (params == null) ? null : (Object[]) params.clone();
+
+        actCalculator = VLEContext.getActivityCalculator(activityMethod);
+        fugCalculator = VLEContext.getFugacityCalculator(fugacityMethod);
+
+        if ((!actCalculator.isNonBinarySystemAllowed()) && (numOfComps != 2))
+            throw new VLEException(MessageHandler.getString("errBinActCalcNotAllow"));
+
+        // The calculators read only the component data from this context.
+        // It is private to the model, so that the compositions pushed into
+        // it for non-reentrant calculators are never seen by anyone else.
+        hostContext = new VLEContext();
+        hostContext.setComponents(components);
+
+        // A calculator rejects a system it has no data for
+        try
+        {
+            actCalculator.setContext(hostContext);
+            fugCalculator.setContext(hostContext);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new VLEException(ex.getMessage());
+        }
+
+        reentrantActCalculator = (actCalculator instanceof IReentrantActivityCalculator)
+            ? (IReentrantActivityCalculator) actCalculator : null;
+        reentrantFugCalculator = (fugCalculator instanceof IReentrantFugacityCalculator)
+            ? (IReentrantFugacityCalculator) fugCalculator : null;
+        bufferedActCalculator = (actCalculator instanceof IBufferedActivityCalculator)
+            ? (IBufferedActivityCalculator) actCalculator : null;
+        bufferedFugCalculator = (fugCalculator instanceof IBufferedFugacityCalculator)
+            ? (IBufferedFugacityCalculator) fugCalculator : null;
+        diffActCalculator = (actCalculator instanceof IDifferentiableActivityCalculator)
+            ? (IDifferentiableActivityCalculator) actCalculator : null;
+        diffFugCalculator = (fugCalculator instanceof IDifferentiableFugacityCalculator)
+            ? (IDifferentiableFugacityCalculator) fugCalculator : null;
+        batchActCalculator = (actCalculator instanceof IBatchActivityCalculator)
+            ? (IBatchActivityCalculator) actCalculator : null;
+        batchFugCalculator = (fugCalculator instanceof IBatchFugacityCalculator)
+            ? (IBatchFugacityCalculator) fugCalculator : null;
+    }
+
+    /**
+     * Returns the number of components in the system.
+     */
+    public int getNumOfComps()
+    {
+        return numOfComps;
+    }
+
+    /**
+     * Returns the list of components in the system.
+     */
+    public ComponentData[] getComponents()
+    {
+        return (ComponentData[]) components.clone();
+    }
+
+    /**
+     * Returns the activity method of the model.
+     */
+    public int getActivityMethod()
+    {
+        return activityMethod;
+    }
+
+    /**
+     * Returns the fugacity method of the model.
+     */
+    public int getFugacityMethod()
+    {
+        return fugacityMethod;
+    }
+
+    /**
+     * Calculates the BUBL P at the given temperature.
+     * @param T Temperature in degree Celsius
+     * @param x Liquid mole fractions
+     */
+    public VLEResult calcBUBLP(double T, double[] x)
+    {
+        return calcBUBLP(T, x, null);
+    }
+
+    /**
+     * Calculates the BUBL P at the given temperature, starting from the
+     * pressure and fugacity coefficients of the guess. It is typically
+     * the result at a neighbouring composition.
+     * @param T Temperature in degree Celsius
+     * @param x Liquid mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     */
+    public VLEResult calcBUBLP(double T, double[] x, VLEResult guess)
+    {
+        return calcBUBLP(T, x, guess, null);
+    }
+
+    /**
+     * Calculates the BUBL P at the given temperature with the acceleration
+     * selected in the options.
+     * @param T Temperature in degree Celsius
+     * @param x Liquid mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     * @param options Solver options, or null for the defaults
+     */
+    public VLEResult calcBUBLP(double T, double[] x, VLEResult guess, SolverOptions options)
+    {
+        CallState state = new CallState();
+        int maxIterations = getMaxIterations(options);
+        int i = 0;
+        int iterations = 0;
+        double P = 0;
+        double Ptemp = 0;
+
+        double[] y = new double[numOfComps];
+        double[] Psat = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+        double[] tmpPhi = new double[numOfComps];
+        double[] lnIn = new double[numOfComps];
+        double[] lnOut = new double[numOfComps];
+        Accelerator accelerator = new Accelerator(options, numOfComps);
+
+        calcPSat(T, Psat);
+        calculateActivity(T, x, gamma, state);
+
+        if (guess == null)
+        {
+            for (i = 0; i < numOfComps; i++)
+            {
+                phi[i] = 1;
+                P += x[i] * gamma[i] * Psat[i];
+            }
+        }
+        else
+        {
+            phi = guess.getFugacityCoefficients();
+            P = guess.getPressure();
+        }
+
+        do
+        {
+            iterations++;
+            Ptemp = P;
+            for (i = 0; i < numOfComps; i++)
+                y[i] = x[i] * gamma[i] * Psat[i] / phi[i] / P;
+
+            System.arraycopy(phi, 0, tmpPhi, 0, numOfComps);
+            calculateFugacity(T, P, y, Psat, phi, state);
+
+            if (accelerator.isEnabled())
+            {
+                log(tmpPhi, lnIn);
+                log(phi, lnOut);
+                accelerator.accelerate(lnIn, lnOut);
+                exp(lnOut, phi);
+            }
+
+            P = 0;
+            for (i = 0; i < numOfComps; i++)
+                P += x[i] * gamma[i] * Psat[i] / phi[i];
+        }
+        while ((Math.abs(P - Ptemp) > Constants.EPSILON) && (iterations < maxIterations));
+
+        state.telemetry.finish(iterations, Math.abs(P - Ptemp), Math.abs(P - Ptemp) <= Constants.EPSILON);
+        return new VLEResult(T, P, 0, x, y, gamma, phi, state.telemetry);
+    }
+
+    /**
+     * Calculates the DEW P at the given temperature.
+     * @param T Temperature in degree Celsius
+     * @param y Vapour mole fractions
+     */
+    public VLEResult calcDEWP(double T, double[] y)
+    {
+        return calcDEWP(T, y, null);
+    }
+
+    /**
+     * Calculates the DEW P at the given temperature, starting from the
+     * pressure and activity coefficients of the guess. It is typically
+     * the result at a neighbouring composition.
+     * @param T Temperature in degree Celsius
+     * @param y Vapour mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     */
+    public VLEResult calcDEWP(double T, double[] y, VLEResult guess)
+    {
+        return calcDEWP(T, y, guess, null);
+    }
+
+    /**
+     * Calculates the DEW P at the given temperature with the acceleration
+     * selected in the options.
+     * @param T Temperature in degree Celsius
+     * @param y Vapour mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     * @param options Solver options, or null for the defaults
+     */
+    public VLEResult calcDEWP(double T, double[] y, VLEResult guess, SolverOptions options)
+    {
+        CallState state = new CallState();
+        int maxIterations = getMaxIterations(options);
+        int i = 0;
+        int iterations = 0;
+        int innerIterations = 0;
+        boolean flag = false;
+        double P = 0;
+        double Ptemp = 0;
+        double sum = 0;
+
+        double[] x = new double[numOfComps];
+        double[] Psat = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+        double[] tmpGamma = new double[numOfComps];
+        double[] lnIn = new double[numOfComps];
+        double[] lnOut = new double[numOfComps];
+        double[] pIn = new double[1];
+        double[] pOut = new double[1];
+        Accelerator accelerator = new Accelerator(options, 1);
+        Accelerator innerAccelerator = new Accelerator(options, numOfComps);
+
+        calcPSat(T, Psat);
+
+        if (guess == null)
+        {
+            for (i = 0; i < numOfComps; i++)
+            {
+                phi[i] = 1;
+                gamma[i] = 1;
+                P += y[i] * phi[i] / gamma[i] / Psat[i];
+            }
+
+            P = 1 / P;
+        }
+        else
+        {
+            gamma = guess.getActivityCoefficients();
+            P = guess.getPressure();
+        }
+
+        do
+        {
+            iterations++;
+            Ptemp = P;
+            calculateFugacity(T, P, y, Psat, phi, state);
+
+            flag = true;
+            innerIterations = 0;
+            innerAccelerator.reset();
+
+            while (flag && (innerIterations < maxIterations))
+            {
+                innerIterations++;
+                sum = 0;
+
+                for (i = 0; i < numOfComps; i++)
+                {
+                    tmpGamma[i] = gamma[i];
+                    x[i] = y[i] * phi[i] * P / gamma[i] / Psat[i];
+                    sum += x[i];
+                }
+
+                for (i = 0; i < numOfComps; i++)
+                    x[i] = x[i] / sum;
+
+                calculateActivity(T, x, gamma, state);
+
+                for (i = 0; i < numOfComps; i++)
+                    if (Math.abs(gamma[i] - tmpGamma[i]) < Constants.EPSILON) flag = false;
+
+                if (flag && innerAccelerator.isEnabled())
+                {
+                    log(tmpGamma, lnIn);
+                    log(gamma, lnOut);
+                    innerAccelerator.accelerate(lnIn, lnOut);
+                    exp(lnOut, gamma);
+                }
+            }
+
+            state.telemetry.addInnerIterations(innerIterations);
+
+            P = 0;
+            for (i = 0; i < numOfComps; i++)
+                P += y[i] * phi[i] / gamma[i] / Psat[i];
+            P = 1 / P;
+
+            if (accelerator.isEnabled())
+            {
+                pIn[0] = Math.log(Ptemp);
+                pOut[0] = Math.log(P);
+                accelerator.accelerate(pIn, pOut);
+                P = Math.exp(pOut[0]);
+            }
+        }
+        while ((Math.abs(P - Ptemp) > Constants.EPSILON) && (iterations < maxIterations));
+
+        state.telemetry.finish(iterations, Math.abs(P - Ptemp),
+            (Math.abs(P - Ptemp) <= Constants.EPSILON) && !flag);
+        return new VLEResult(T, P, 1, x, y, gamma, phi, state.telemetry);
+    }
+
+    /**
+     * Calculates the BUBL T at the given pressure.
+     * @param P Pressure in kPa
+     * @param x Liquid mole fractions
+     */
+    public VLEResult calcBUBLT(double P, double[] x)
+    {
+        return calcBUBLT(P, x, null);
+    }
+
+    /**
+     * Calculates the BUBL T at the given pressure, starting from the
+     * temperature and fugacity coefficients of the guess. It is typically
+     * the result at a neighbouring composition.
+     * @param P Pressure in kPa
+     * @param x Liquid mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     */
+    public VLEResult calcBUBLT(double P, double[] x, VLEResult guess)
+    {
+        return calcBUBLT(P, x, guess, null);
+    }
+
+    /**
+     * Calculates the BUBL T at the given pressure with the temperature
+     * solver selected in the options.
+     * @param P Pressure in kPa
+     * @param x Liquid mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     * @param options Solver options, or null for the defaults
+     */
+    public VLEResult calcBUBLT(double P, double[] x, VLEResult guess, SolverOptions options)
+    {
+        if ((options != null) && (options.getTemperatureSolver() == SolverOptions.TSOLVER_NEWTON))
+            return calcBUBLTByNewton(P, x, guess, options);
+
+        return calcBUBLTBySubstitution(P, x, guess, options);
+    }
+
+    /**
+     * Calculates the BUBL T by successive substitution on the saturation
+     * temperature of the first component.
+     */
+    private VLEResult calcBUBLTBySubstitution(double P, double[] x, VLEResult guess,
+        SolverOptions options)
+    {
+        CallState state = new CallState();
+        int maxIterations = getMaxIterations(options);
+        int i = 0;
+        int iterations = 0;
+        double T = 0;
+        double Ttemp = 0;
+        double sum = 0;
+
+        double[] y = new double[numOfComps];
+        double[] Tsat = null;
+        double[] Psat = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+        double[] tmpPhi = new double[numOfComps];
+        double[] in = new double[numOfComps + 1];
+        double[] out = new double[numOfComps + 1];
+        Accelerator accelerator = new Accelerator(options, numOfComps + 1);
+
+        if (guess == null)
+        {
+            Tsat = calcTSat(P);
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                phi[i] = 1;
+                gamma[i] = 1;
+                T += x[i] * Tsat[i];
+            }
+        }
+        else
+        {
+            phi = guess.getFugacityCoefficients();
+            T = guess.getTemperature();
+        }
+
+        calcPSat(T, Psat);
+        calculateActivity(T, x, gamma, state);
+
+        for (i = 0; i < numOfComps; i++)
+            sum += x[i] * gamma[i] * Psat[i] / phi[i] / Psat[0];
+        Psat[0] = P / sum;
+
+        do
+        {
+            iterations++;
+            Ttemp = T;
+            calcPSat(T, Psat);
+
+            for (i = 0; i < numOfComps; i++)
+                y[i] = x[i] * gamma[i] * Psat[i] / phi[i] / P;
+
+            calculateActivity(T, x, gamma, state);
+            System.arraycopy(phi, 0, tmpPhi, 0, numOfComps);
+            calculateFugacity(T, P, y, Psat, phi, state);
+
+            sum = 0;
+            for (i = 0; i < numOfComps; i++)
+                sum += x[i] * gamma[i] * Psat[i] / phi[i] / Psat[0];
+            Psat[0] = P / sum;
+
+            T = calcTSat(Psat[0], 0);
+
+            if (accelerator.isEnabled())
+            {
+                // The temperature and ln(phi) are accelerated together,
+                // the activity coefficients follow from the temperature.
+                in[0] = Ttemp;
+                out[0] = T;
+                for (i = 0; i < numOfComps; i++)
+                {
+                    in[i + 1] = Math.log(tmpPhi[i]);
+                    out[i + 1] = Math.log(phi[i]);
+                }
+
+                accelerator.accelerate(in, out);
+                T = out[0];
+                for (i = 0; i < numOfComps; i++)
+                    phi[i] = Math.exp(out[i + 1]);
+            }
+        }
+        while ((Math.abs(T - Ttemp) > Constants.EPSILON) && (iterations < maxIterations));
+
+        state.telemetry.finish(iterations, Math.abs(T - Ttemp), Math.abs(T - Ttemp) <= Constants.EPSILON);
+        return new VLEResult(T, P, 0, x, y, gamma, phi, state.telemetry);
+    }
+
+    /**
+     * Calculates the BUBL T by safeguarded Newton iteration on
+     * f(T) = ln(sum(K x)). At every temperature the vapour composition and
+     * fugacity coefficients are converged first, so that f depends on the
+     * temperature alone. If both calculators give analytic derivatives,
+     * every step takes the temperature dependence of the activity and
+     * fugacity coefficients from them. Otherwise the first step takes the
+     * derivative from the Antoine equation, and the later steps use the
+     * secant through the last two temperatures, which also accounts for
+     * it. Steps falling out of the bracket found so far are replaced by
+     * bisection.
+     */
+    private VLEResult calcBUBLTByNewton(double P, double[] x, VLEResult guess,
+        SolverOptions options)
+    {
+        CallState state = new CallState();
+        int maxIterations = getMaxIterations(options);
+        int i = 0;
+        int iterations = 0;
+        int innerIterations = 0;
+        double T = 0;
+        double Tprev = 0;
+        double dT = 0;
+        double f = 0;
+        double fPrev = 0;
+        double df = 0;
+        double sum = 0;
+        double change = 0;
+        double Tlow = Double.NEGATIVE_INFINITY;
+        double Thigh = Double.POSITIVE_INFINITY;
+
+        double[] y = new double[numOfComps];
+        double[] k = new double[numOfComps];
+        double[] dLnK = new double[numOfComps];
+        double[] Tsat = null;
+        double[] Psat = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+
+        if (guess == null)
+        {
+            Tsat = calcTSat(P);
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                phi[i] = 1;
+                T += x[i] * Tsat[i];
+            }
+        }
+        else
+        {
+            phi = guess.getFugacityCoefficients();
+            T = guess.getTemperature();
+        }
+
+        do
+        {
+            iterations++;
+            calcPSat(T, Psat);
+            calculateActivity(T, x, gamma, state);
+            innerIterations = 0;
+
+            do
+            {
+                innerIterations++;
+                sum = 0;
+                for (i = 0; i < numOfComps; i++)
+                {
+                    k[i] = gamma[i] * Psat[i] / phi[i] / P;
+                    sum += k[i] * x[i];
+                }
+
+                change = 0;
+                for (i = 0; i < numOfComps; i++)
+                {
+                    change = Math.max(change, Math.abs(k[i] * x[i] / sum - y[i]));
+                    y[i] = k[i] * x[i] / sum;
+                }
+
+                calculateFugacity(T, P, y, Psat, phi, state);
+            }
+            while ((change > Constants.EPSILON) && (innerIterations < MAX_INNER_ITERATIONS));
+
+            state.telemetry.addInnerIterations(innerIterations);
+
+            calcDLnKdT(T, P, x, y, Psat, dLnK, state);
+
+            sum = 0;
+            df = 0;
+            for (i = 0; i < numOfComps; i++)
+            {
+                k[i] = gamma[i] * Psat[i] / phi[i] / P;
+                sum += k[i] * x[i];
+                df += k[i] * x[i] * dLnK[i];
+            }
+
+            f = Math.log(sum);
+            df = df / sum;
+
+            if (f > 0)
+                Thigh = T;
+            else
+                Tlow = T;
+
+            if ((!hasAnalyticDerivatives()) && (iterations > 1) && ((f - fPrev) / (T - Tprev) > 0))
+                df = (f - fPrev) / (T - Tprev);
+
+            dT = safeguardStep(T, -f / df, Tlow, Thigh);
+            Tprev = T;
+            fPrev = f;
+            T += dT;
+        }
+        while ((Math.abs(dT) > Constants.EPSILON) && (iterations < maxIterations));
+
+        state.telemetry.finish(iterations, Math.abs(dT),
+            (Math.abs(dT) <= Constants.EPSILON) && (change <= Constants.EPSILON));
+        return new VLEResult(T, P, 0, x, y, gamma, phi, state.telemetry);
+    }
+
+    /**
+     * Calculates the DEW T at the given pressure.
+     * @param P Pressure in kPa
+     * @param y Vapour mole fractions
+     */
+    public VLEResult calcDEWT(double P, double[] y)
+    {
+        return calcDEWT(P, y, null);
+    }
+
+    /**
+     * Calculates the DEW T at the given pressure, starting from the
+     * temperature and activity coefficients of the guess. It is typically
+     * the result at a neighbouring composition.
+     * @param P Pressure in kPa
+     * @param y Vapour mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     */
+    public VLEResult calcDEWT(double P, double[] y, VLEResult guess)
+    {
+        return calcDEWT(P, y, guess, null);
+    }
+
+    /**
+     * Calculates the DEW T at the given pressure with the temperature
+     * solver selected in the options.
+     * @param P Pressure in kPa
+     * @param y Vapour mole fractions
+     * @param guess Starting guess, or null to start from Raoult's law
+     * @param options Solver options, or null for the defaults
+     */
+    public VLEResult calcDEWT(double P, double[] y, VLEResult guess, SolverOptions options)
+    {
+        if ((options != null) && (options.getTemperatureSolver() == SolverOptions.TSOLVER_NEWTON))
+            return calcDEWTByNewton(P, y, guess, options);
+
+        return calcDEWTBySubstitution(P, y, guess, options);
+    }
+
+    /**
+     * Calculates the DEW T by successive substitution on the saturation
+     * temperature of the first component.
+     */
+    private VLEResult calcDEWTBySubstitution(double P, double[] y, VLEResult guess,
+        SolverOptions options)
+    {
+        CallState state = new CallState();
+        int maxIterations = getMaxIterations(options);
+        int i = 0;
+        int iterations = 0;
+        int innerIterations = 0;
+        boolean flag = false;
+        double T = 0;
+        double Ttemp = 0;
+        double sum = 0;
+
+        double[] x = new double[numOfComps];
+        double[] Tsat = null;
+        double[] Psat = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+        double[] tmpGamma = new double[numOfComps];
+        double[] lnIn = new double[numOfComps];
+        double[] lnOut = new double[numOfComps];
+        double[] tIn = new double[1];
+        double[] tOut = new double[1];
+        Accelerator accelerator = new Accelerator(options, 1);
+        Accelerator innerAccelerator = new Accelerator(options, numOfComps);
+
+        if (guess == null)
+        {
+            Tsat = calcTSat(P);
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                phi[i] = 1;
+                gamma[i] = 1;
+                T += y[i] * Tsat[i];
+            }
+
+            calcPSat(T, Psat);
+
+            for (i = 0; i < numOfComps; i++)
+                sum += y[i] * phi[i] * Psat[0] / gamma[i] / Psat[i];
+            Psat[0] = P * sum;
+            T = calcTSat(Psat[0], 0);
+
+            calcPSat(T, Psat);
+            calculateFugacity(T, P, y, Psat, phi, state);
+
+            for (i = 0; i < numOfComps; i++)
+                x[i] = y[i] * phi[i] * P / gamma[i] / Psat[0];
+            calculateActivity(T, x, gamma, state);
+
+            sum = 0;
+            for (i = 0; i < numOfComps; i++)
+                sum += y[i] * phi[i] * Psat[0] / gamma[i] / Psat[i];
+            Psat[0] = P * sum;
+            T = calcTSat(Psat[0], 0);
+        }
+        else
+        {
+            gamma = guess.getActivityCoefficients();
+            T = guess.getTemperature();
+        }
+
+        do
+        {
+            iterations++;
+            Ttemp = T;
+            calcPSat(T, Psat);
+            calculateFugacity(T, P, y, Psat, phi, state);
+
+            flag = true;
+            innerIterations = 0;
+            innerAccelerator.reset();
+
+            while (flag && (innerIterations < maxIterations))
+            {
+                innerIterations++;
+                sum = 0;
+
+                for (i = 0; i < numOfComps; i++)
+                {
+                    tmpGamma[i] = gamma[i];
+                    x[i] = y[i] * phi[i] * P / gamma[i] / Psat[i];
+                    sum += x[i];
+                }
+
+                for (i = 0; i < numOfComps; i++)
+                    x[i] = x[i] / sum;
+
+                calculateActivity(T, x, gamma, state);
+
+                for (i = 0; i < numOfComps; i++)
+                    if (Math.abs(gamma[i] - tmpGamma[i]) < Constants.EPSILON) flag = false;
+
+                if (flag && innerAccelerator.isEnabled())
+                {
+                    log(tmpGamma, lnIn);
+                    log(gamma, lnOut);
+                    innerAccelerator.accelerate(lnIn, lnOut);
+                    exp(lnOut, gamma);
+                }
+            }
+
+            state.telemetry.addInnerIterations(innerIterations);
+
+            sum = 0;
+            for (i = 0; i < numOfComps; i++)
+                sum += y[i] * phi[i] * Psat[0] / gamma[i] / Psat[i];
+            Psat[0] = P * sum;
+            T = calcTSat(Psat[0], 0);
+
+            if (accelerator.isEnabled())
+            {
+                tIn[0] = Ttemp;
+                tOut[0] = T;
+                accelerator.accelerate(tIn, tOut);
+                T = tOut[0];
+            }
+        }
+        while ((Math.abs(T - Ttemp) > Constants.EPSILON) && (iterations < maxIterations));
+
+        state.telemetry.finish(iterations, Math.abs(T - Ttemp),
+            (Math.abs(T - Ttemp) <= Constants.EPSILON) && !flag);
+        return new VLEResult(T, P, 1, x, y, gamma, phi, state.telemetry);
+    }
+
+    /**
+     * Calculates the DEW T by safeguarded Newton iteration on
+     * f(T) = ln(sum(y / K)). At every temperature the liquid composition and
+     * activity coefficients are converged first, so that f depends on the
+     * temperature alone. If both calculators give analytic derivatives,
+     * every step takes the temperature dependence of the activity and
+     * fugacity coefficients from them. Otherwise the first step takes the
+     * derivative from the Antoine equation, and the later steps use the
+     * secant through the last two temperatures, which also accounts for
+     * it. Steps falling out of the bracket found so far are replaced by
+     * bisection.
+     */
+    private VLEResult calcDEWTByNewton(double P, double[] y, VLEResult guess,
+        SolverOptions options)
+    {
+        CallState state = new CallState();
+        int maxIterations = getMaxIterations(options);
+        int i = 0;
+        int iterations = 0;
+        int innerIterations = 0;
+        double T = 0;
+        double Tprev = 0;
+        double dT = 0;
+        double f = 0;
+        double fPrev = 0;
+        double df = 0;
+        double sum = 0;
+        double change = 0;
+        double Tlow = Double.NEGATIVE_INFINITY;
+        double Thigh = Double.POSITIVE_INFINITY;
+
+        double[] x = new double[numOfComps];
+        double[] k = new double[numOfComps];
+        double[] dLnK = new double[numOfComps];
+        double[] Tsat = null;
+        double[] Psat = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+        double[] tmpGamma = new double[numOfComps];
+
+        if (guess == null)
+        {
+            Tsat = calcTSat(P);
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                gamma[i] = 1;
+                T += y[i] * Tsat[i];
+            }
+        }
+        else
+        {
+            gamma = guess.getActivityCoefficients();
+            T = guess.getTemperature();
+        }
+
+        do
+        {
+            iterations++;
+            calcPSat(T, Psat);
+            calculateFugacity(T, P, y, Psat, phi, state);
+            innerIterations = 0;
+
+            do
+            {
+                innerIterations++;
+                sum = 0;
+                for (i = 0; i < numOfComps; i++)
+                {
+                    k[i] = gamma[i] * Psat[i] / phi[i] / P;
+                    sum += y[i] / k[i];
+                }
+
+                for (i = 0; i < numOfComps; i++)
+                    x[i] = y[i] / k[i] / sum;
+
+                System.arraycopy(gamma, 0, tmpGamma, 0, numOfComps);
+                calculateActivity(T, x, gamma, state);
+
+                change = 0;
+                for (i = 0; i < numOfComps; i++)
+                    change = Math.max(change, Math.abs(gamma[i] - tmpGamma[i]));
+            }
+            while ((change > Constants.EPSILON) && (innerIterations < MAX_INNER_ITERATIONS));
+
+            state.telemetry.addInnerIterations(innerIterations);
+
+            calcDLnKdT(T, P, x, y, Psat, dLnK, state);
+
+            sum = 0;
+            df = 0;
+            for (i = 0; i < numOfComps; i++)
+            {
+                k[i] = gamma[i] * Psat[i] / phi[i] / P;
+                sum += y[i] / k[i];
+                df -= y[i] / k[i] * dLnK[i];
+            }
+
+            f = Math.log(sum);
+            df = df / sum;
+
+            if (f < 0)
+                Thigh = T;
+            else
+                Tlow = T;
+
+            if ((!hasAnalyticDerivatives()) && (iterations > 1) && ((f - fPrev) / (T - Tprev) < 0))
+                df = (f - fPrev) / (T - Tprev);
+
+            dT = safeguardStep(T, -f / df, Tlow, Thigh);
+            Tprev = T;
+            fPrev = f;
+            T += dT;
+        }
+        while ((Math.abs(dT) > Constants.EPSILON) && (iterations < maxIterations));
+
+        state.telemetry.finish(iterations, Math.abs(dT),
+            (Math.abs(dT) <= Constants.EPSILON) && (change <= Constants.EPSILON));
+        return new VLEResult(T, P, 1, x, y, gamma, phi, state.telemetry);
+    }
+
+    /**
+     * Limits a Newton step on the temperature. The step is cut to
+     * MAX_NEWTON_STEP, and if it leaves the bracket, the middle of the
+     * bracket is taken instead.
+     */
+    private static double safeguardStep(double T, double dT, double Tlow, double Thigh)
+    {
+        if (Double.isNaN(dT))
+            dT = 0;
+
+        if (Math.abs(dT) > MAX_NEWTON_STEP)
+            dT = (dT > 0) ? MAX_NEWTON_STEP : -MAX_NEWTON_STEP;
+
+        if ((T + dT <= Tlow) || (T + dT >= Thigh))
+        {
+            if ((!Double.isInfinite(Tlow)) && (!Double.isInfinite(Thigh)))
+                dT = (Tlow + Thigh) / 2 - T;
+        }
+
+        return dT;
+    }
+
+    /**
+     * Calculates the flash point compositions at given P and T.
+     * The K-values are kept fixed while the Rachford-Rice equation is
+     * solved, and are updated from the new compositions afterwards. When
+     * the equation has no root between 0 and 1 the phase compositions are
+     * those of the bubble (or dew) point, so that the phase state of the
+     * mixture is known from the converged K-values without separate
+     * BUBL P and DEW P calculations.
+     * @param P Pressure in kPa
+     * @param T Temperature in degree Celsius
+     * @param z Mole fractions of the mixture
+     */
+    public VLEResult calcFlashPoint(double P, double T, double[] z)
+        throws VLEException
+    {
+        return calcFlashPoint(P, T, z, null);
+    }
+
+    /**
+     * Calculates the flash point compositions at given P and T with the
+     * acceleration selected in the options. The acceleration works on ln K.
+     * @param P Pressure in kPa
+     * @param T Temperature in degree Celsius
+     * @param z Mole fractions of the mixture
+     * @param options Solver options, or null for the defaults
+     */
+    public VLEResult calcFlashPoint(double P, double T, double[] z, SolverOptions options)
+        throws VLEException
+    {
+        CallState state = new CallState();
+        int maxIterations = getMaxIterations(options);
+        boolean flag = true;
+        int i = 0;
+        int iterations = 0;
+        double vapFraction = 0.5;
+        double vapFracTemp = 0;
+        double sum = 0;
+        double change = 0;
+        double[] k = new double[numOfComps];
+        double[] tmpK = new double[numOfComps];
+        double[] x = new double[numOfComps];
+        double[] y = new double[numOfComps];
+        double[] Psat = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+        double[] lnIn = new double[numOfComps];
+        double[] lnOut = new double[numOfComps];
+        Accelerator accelerator = new Accelerator(options, numOfComps);
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            x[i] = z[i];
+            y[i] = z[i];
+        }
+
+        calcPSat(T, Psat);
+        calculateActivity(T, x, gamma, state);
+        calculateFugacity(T, P, y, Psat, phi, state);
+
+        while (flag && (iterations < maxIterations))
+        {
+            iterations++;
+            vapFracTemp = vapFraction;
+
+            System.arraycopy(k, 0, tmpK, 0, numOfComps);
+            for (i = 0; i < numOfComps; i++)
+                k[i] = gamma[i] * Psat[i] / phi[i] / P;
+
+            if (accelerator.isEnabled() && (iterations > 1))
+            {
+                log(tmpK, lnIn);
+                log(k, lnOut);
+                accelerator.accelerate(lnIn, lnOut);
+                exp(lnOut, k);
+            }
+
+            vapFraction = solveRachfordRice(z, k, vapFraction, state.telemetry);
+            change = 0;
+            sum = 0;
+
+            if (vapFraction == 0)
+            {
+                // Subcooled side: the liquid is the mixture, the vapour
+                // is the incipient bubble.
+                for (i = 0; i < numOfComps; i++)
+                    sum += k[i] * z[i];
+
+                for (i = 0; i < numOfComps; i++)
+                {
+                    change = Math.max(change, Math.abs(z[i] - x[i]));
+                    change = Math.max(change, Math.abs(k[i] * z[i] / sum - y[i]));
+                    x[i] = z[i];
+                    y[i] = k[i] * z[i] / sum;
+                }
+            }
+            else if (vapFraction == 1)
+            {
+                // Superheated side: the vapour is the mixture, the liquid
+                // is the incipient drop.
+                for (i = 0; i < numOfComps; i++)
+                    sum += z[i] / k[i];
+
+                for (i = 0; i < numOfComps; i++)
+                {
+                    change = Math.max(change, Math.abs(z[i] / k[i] / sum - x[i]));
+                    change = Math.max(change, Math.abs(z[i] - y[i]));
+                    x[i] = z[i] / k[i] / sum;
+                    y[i] = z[i];
+                }
+            }
+            else
+            {
+                for (i = 0; i < numOfComps; i++)
+                {
+                    double xi = z[i] / (1 + vapFraction * (k[i] - 1));
+
+                    change = Math.max(change, Math.abs(xi - x[i]));
+                    change = Math.max(change, Math.abs(k[i] * xi - y[i]));
+                    x[i] = xi;
+                    y[i] = k[i] * xi;
+                }
+            }
+
+            calculateActivity(T, x, gamma, state);
+            calculateFugacity(T, P, y, Psat, phi, state);
+
+            if ((Math.abs(vapFraction - vapFracTemp) < Constants.EPSILON) && (change < Constants.EPSILON))
+                flag = false;
+        }
+
+        state.telemetry.finish(iterations, Math.max(Math.abs(vapFraction - vapFracTemp), change), !flag);
+
+        if (vapFraction == 0)
+            throw new VLEException(MessageHandler.getString("errMixSubCooled") + " "
+                + MessageHandler.getString("errFlashCalcNP"));
+
+        if (vapFraction == 1)
+            throw new VLEException(MessageHandler.getString("errMixSuperHeated") + " "
+                + MessageHandler.getString("errFlashCalcNP"));
+
+        return new VLEResult(T, P, vapFraction, x, y, gamma, phi, state.telemetry);
+    }
+
+    /**
+     * Solves the Rachford-Rice equation
+     * sum(z (K - 1) / (1 + V (K - 1))) = 0 for the vapour fraction V at
+     * fixed K-values. Returns 0 if the mixture is all liquid and 1 if it is
+     * all vapour at these K-values. The root is bracketed by the window of
+     * Leibovici and Neoschil, in which all the phase mole fractions are
+     * positive, and Newton steps falling out of the bracket are replaced by
+     * bisection.
+     * @param z Mole fractions of the mixture
+     * @param k K-values of the components
+     * @param guess Starting vapour fraction
+     * @param telemetry Record in which the iterations are counted
+     */
+    private double solveRachfordRice(double[] z, double[] k, double guess,
+        SolverTelemetry telemetry)
+    {
+        int i = 0;
+        double V = 0;
+        double dV = 0;
+        double f = 0;
+        double df = 0;
+        double t = 0;
+        double Vlow = 0;
+        double Vhigh = 1;
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            f += z[i] * (k[i] - 1);
+            df += z[i] * (1 - 1 / k[i]);
+        }
+
+        if (f <= 0)
+            return 0;
+
+        if (df >= 0)
+            return 1;
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            if (k[i] > 1)
+                Vlow = Math.max(Vlow, (k[i] * z[i] - 1) / (k[i] - 1));
+            else if (k[i] < 1)
+                Vhigh = Math.min(Vhigh, (1 - z[i]) / (1 - k[i]));
+        }
+
+        V = ((guess > Vlow) && (guess < Vhigh)) ? guess : (Vlow + Vhigh) / 2;
+
+        do
+        {
+            telemetry.addInnerIterations(1);
+            f = 0;
+            df = 0;
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                t = 1 + V * (k[i] - 1);
+                f += z[i] * (k[i] - 1) / t;
+                df -= z[i] * MathUtils.square((k[i] - 1) / t);
+            }
+
+            // f decreases with V
+            if (f > 0)
+                Vlow = V;
+            else
+                Vhigh = V;
+
+            dV = -f / df;
+
+            if ((V + dV <= Vlow) || (V + dV >= Vhigh))
+                dV = (Vlow + Vhigh) / 2 - V;
+
+            V += dV;
+        }
+        while ((Math.abs(dV) > Constants.EPSILON * Constants.EPSILON) && (Vhigh - Vlow > Constants.EPSILON * Constants.EPSILON));
+
+        return V;
+    }
+
+    /**
+     * Returns whether both calculators of the model give analytic
+     * derivatives.
+     */
+    public boolean hasAnalyticDerivatives()
+    {
+        return (diffActCalculator != null) && (diffFugCalculator != null);
+    }
+
+    /**
+     * Calculates ln gamma and its partial derivatives. The derivatives are
+     * analytic if the activity calculator implements
+     * IDifferentiableActivityCalculator, and central differences otherwise.
+     * @param T Temperature in degree Celsius
+     * @param x Liquid mole fractions
+     * @param lnGamma Array receiving ln gamma
+     * @param dT Array receiving d(ln gamma(i))/dT, or null if not needed
+     * @param dx Array receiving d(ln gamma(i))/dx(j) at index i * n + j,
+     *           or null if not needed
+     */
+    public void calcLnActivity(double T, double[] x, double[] lnGamma, double[] dT, double[] dx)
+    {
+        CallState state = new CallState();
+        int i = 0;
+        int j = 0;
+        double h = 0;
+        double low = 0;
+        double high = 0;
+        double[] xh = null;
+        double[] plus = new double[numOfComps];
+        double[] minus = new double[numOfComps];
+
+        if (diffActCalculator != null)
+        {
+            diffActCalculator.calculateLnActivity(T, x, actMethodParams, lnGamma, dT, dx,
+                state.actWorkspace);
+            return;
+        }
+
+        calculateActivity(T, x, plus, state);
+        log(plus, lnGamma);
+
+        if (dT != null)
+        {
+            h = NUMERICAL_STEP * (T + Constants.K_C_DIFF);
+            calculateActivity(T + h, x, plus, state);
+            calculateActivity(T - h, x, minus, state);
+
+            for (i = 0; i < numOfComps; i++)
+                dT[i] = (Math.log(plus[i]) - Math.log(minus[i])) / (2 * h);
+        }
+
+        if (dx != null)
+        {
+            xh = (double[]) x.clone();
+
+            for (j = 0; j < numOfComps; j++)
+            {
+                // Mole fractions are not taken below zero
+                low = Math.max(0, x[j] - NUMERICAL_STEP);
+                high = x[j] + NUMERICAL_STEP;
+
+                xh[j] = high;
+                calculateActivity(T, xh, plus, state);
+                xh[j] = low;
+                calculateActivity(T, xh, minus, state);
+                xh[j] = x[j];
+
+                for (i = 0; i < numOfComps; i++)
+                    dx[i * numOfComps + j] = (Math.log(plus[i]) - Math.log(minus[i])) / (high - low);
+            }
+        }
+    }
+
+    /**
+     * Calculates ln phi and its partial derivatives, with the saturation
+     * pressures from the Antoine equation. The derivative in T is the total
+     * one, including the change of the saturation pressures. The derivatives
+     * are analytic if the fugacity calculator implements
+     * IDifferentiableFugacityCalculator, and central differences otherwise.
+     * @param T Temperature in degree Celsius
+     * @param P Pressure in kPa
+     * @param y Vapour mole fractions
+     * @param lnPhi Array receiving ln phi
+     * @param dT Array receiving d(ln phi(i))/dT, or null if not needed
+     * @param dP Array receiving d(ln phi(i))/dP, or null if not needed
+     * @param dy Array receiving d(ln phi(i))/dy(j) at index i * n + j,
+     *           or null if not needed
+     */
+    public void calcLnFugacity(double T, double P, double[] y, double[] lnPhi, double[] dT,
+        double[] dP, double[] dy)
+    {
+        CallState state = new CallState();
+        int i = 0;
+        int j = 0;
+        double h = 0;
+        double low = 0;
+        double high = 0;
+        double[] yh = null;
+        double[] Psat = new double[numOfComps];
+        double[] dPsat = new double[numOfComps];
+        double[] plus = new double[numOfComps];
+        double[] minus = new double[numOfComps];
+
+        calcPSat(T, Psat);
+
+        if (diffFugCalculator != null)
+        {
+            for (i = 0; i < numOfComps; i++)
+                dPsat[i] = Psat[i] * calcDLnPSat(T, i);
+
+            diffFugCalculator.calculateLnFugacity(T, P, y, Psat, dPsat, lnPhi, dT, dP, dy,
+                state.fugWorkspace);
+            return;
+        }
+
+        calculateFugacity(T, P, y, Psat, plus, state);
+        log(plus, lnPhi);
+
+        if (dT != null)
+        {
+            h = NUMERICAL_STEP * (T + Constants.K_C_DIFF);
+            calcPSat(T + h, dPsat);
+            calculateFugacity(T + h, P, y, dPsat, plus, state);
+            calcPSat(T - h, dPsat);
+            calculateFugacity(T - h, P, y, dPsat, minus, state);
+
+            for (i = 0; i < numOfComps; i++)
+                dT[i] = (Math.log(plus[i]) - Math.log(minus[i])) / (2 * h);
+        }
+
+        if (dP != null)
+        {
+            h = NUMERICAL_STEP * P;
+            calculateFugacity(T, P + h, y, Psat, plus, state);
+            calculateFugacity(T, P - h, y, Psat, minus, state);
+
+            for (i = 0; i < numOfComps; i++)
+                dP[i] = (Math.log(plus[i]) - Math.log(minus[i])) / (2 * h);
+        }
+
+        if (dy != null)
+        {
+            yh = (double[]) y.clone();
+
+            for (j = 0; j < numOfComps; j++)
+            {
+                // Mole fractions are not taken below zero
+                low = Math.max(0, y[j] - NUMERICAL_STEP);
+                high = y[j] + NUMERICAL_STEP;
+
+                yh[j] = high;
+                calculateFugacity(T, P, yh, Psat, plus, state);
+                yh[j] = low;
+                calculateFugacity(T, P, yh, Psat, minus, state);
+                yh[j] = y[j];
+
+                for (i = 0; i < numOfComps; i++)
+                    dy[i * numOfComps + j] = (Math.log(plus[i]) - Math.log(minus[i])) / (high - low);
+            }
+        }
+    }
+
+    /**
+     * Calculates the activity coefficients of a block of compositions.
+     * The blocks are stored by component: the value of component i at
+     * point k is at index i * count + k. Calculators which do not implement
+     * IBatchActivityCalculator are called point by point.
+     * @param T Temperatures of the points in degree Celsius
+     * @param x Liquid mole fractions of the points
+     * @param count Number of points
+     * @param gamma Array receiving the activity coefficients, in the layout of x
+     */
+    public void calcActivityBatch(double[] T, double[] x, int count, double[] gamma)
+    {
+        CallState state = new CallState();
+        int i = 0;
+        int k = 0;
+        double[] point = null;
+        double[] result = null;
+
+        if (batchActCalculator != null)
+        {
+            batchActCalculator.calculateActivityBatch(T, x, count, actMethodParams, gamma,
+                state.actWorkspace);
+            return;
+        }
+
+        point = new double[numOfComps];
+        result = new double[numOfComps];
+
+        for (k = 0; k < count; k++)
+        {
+            for (i = 0; i < numOfComps; i++)
+                point[i] = x[i * count + k];
+
+            calculateActivity(T[k], point, result, state);
+
+            for (i = 0; i < numOfComps; i++)
+                gamma[i * count + k] = result[i];
+        }
+    }
+
+    /**
+     * Calculates the fugacity coefficients of a block of compositions,
+     * with the saturation pressures from the Antoine equation. The blocks
+     * are stored by component: the value of component i at point k is at
+     * index i * count + k. Calculators which do not implement
+     * IBatchFugacityCalculator are called point by point.
+     * @param T Temperatures of the points in degree Celsius
+     * @param P Pressures of the points in kPa
+     * @param y Vapour mole fractions of the points
+     * @param count Number of points
+     * @param phi Array receiving the fugacity coefficients, in the layout of y
+     */
+    public void calcFugacityBatch(double[] T, double[] P, double[] y, int count, double[] phi)
+    {
+        CallState state = new CallState();
+        int i = 0;
+        int k = 0;
+        double[] Psat = new double[numOfComps];
+        double[] point = null;
+        double[] result = null;
+        double[] batchPsat = null;
+
+        if (batchFugCalculator != null)
+        {
+            batchPsat = new double[numOfComps * count];
+
+            for (k = 0; k < count; k++)
+            {
+                calcPSat(T[k], Psat);
+
+                for (i = 0; i < numOfComps; i++)
+                    batchPsat[i * count + k] = Psat[i];
+            }
+
+            batchFugCalculator.calculateFugacityBatch(T, P, y, batchPsat, count, phi,
+                state.fugWorkspace);
+            return;
+        }
+
+        point = new double[numOfComps];
+        result = new double[numOfComps];
+
+        for (k = 0; k < count; k++)
+        {
+            for (i = 0; i < numOfComps; i++)
+                point[i] = y[i * count + k];
+
+            calcPSat(T[k], Psat);
+            calculateFugacity(T[k], P[k], point, Psat, result, state);
+
+            for (i = 0; i < numOfComps; i++)
+                phi[i * count + k] = result[i];
+        }
+    }
+
+    /**
+     * Calculates d(ln K)/dT at fixed compositions for the Newton
+     * temperature solvers. With analytic derivatives of both calculators
+     * it includes the change of the activity and fugacity coefficients,
+     * otherwise only the change of the saturation pressures.
+     */
+    private void calcDLnKdT(double T, double P, double[] x, double[] y, double[] Psat,
+        double[] dLnK, CallState state)
+    {
+        int i = 0;
+
+        for (i = 0; i < numOfComps; i++)
+            dLnK[i] = calcDLnPSat(T, i);
+
+        if (!hasAnalyticDerivatives())
+            return;
+
+        if (state.dPsat == null)
+        {
+            state.lnValues = new double[numOfComps];
+            state.dPsat = new double[numOfComps];
+            state.dLnGamma = new double[numOfComps];
+            state.dLnPhi = new double[numOfComps];
+        }
+
+        for (i = 0; i < numOfComps; i++)
+            state.dPsat[i] = Psat[i] * dLnK[i];
+
+        state.telemetry.countActivityCall();
+        diffActCalculator.calculateLnActivity(T, x, actMethodParams, state.lnValues,
+            state.dLnGamma, null, state.actWorkspace);
+
+        state.telemetry.countFugacityCall();
+        diffFugCalculator.calculateLnFugacity(T, P, y, Psat, state.dPsat, state.lnValues,
+            state.dLnPhi, null, null, state.fugWorkspace);
+
+        for (i = 0; i < numOfComps; i++)
+            dLnK[i] += state.dLnGamma[i] - state.dLnPhi[i];
+    }
+
+    /**
+     * Calculates the saturation (vapour) pressure at given temperature
+     * using Antoine Equation.
+     * @param Psat Array receiving the saturation pressures
+     */
+    private void calcPSat(double T, double[] Psat)
+    {
+        for (int i = 0; i < numOfComps; i++)
+        {
+            ComponentData comp = components[i];
+            Psat[i] = Constants.KPA_PER_MMHG * Math.pow(10, comp.antA - comp.antB / (comp.antC + T));
+        }
+    }
+
+    /**
+     * Calculates the saturation temperature at given pressure
+     * using Antoine Equation.
+     */
+    private double[] calcTSat(double P)
+    {
+        double[] Tsat = new double[numOfComps];
+
+        for (int i = 0; i < numOfComps; i++)
+        {
+            ComponentData comp = components[i];
+            Tsat[i] = comp.antB / (comp.antA - Math.log(P / Constants.KPA_PER_MMHG) / Math.log(10)) - comp.antC;
+        }
+
+        return Tsat;
+    }
+
+    /**
+     * Calculates the saturation temperature of one component at given
+     * pressure using Antoine Equation.
+     */
+    private double calcTSat(double P, int comp)
+    {
+        ComponentData data = components[comp];
+
+        return data.antB / (data.antA - Math.log(P / Constants.KPA_PER_MMHG) / Math.log(10)) - data.antC;
+    }
+
+    /**
+     * Calculates d(ln Psat)/dT of one component at given temperature
+     * using Antoine Equation.
+     */
+    private double calcDLnPSat(double T, int comp)
+    {
+        ComponentData data = components[comp];
+
+        return Math.log(10) * data.antB / MathUtils.square(data.antC + T);
+    }
+
+    /**
+     * Returns the iteration limit of the options.
+     */
+    private static int getMaxIterations(SolverOptions options)
+    {
+        return (options == null) ? SolverOptions.DEFAULT_MAX_ITERATIONS
+                                 : options.getMaxIterations();
+    }
+
+    /**
+     * Stores the natural logarithms of the values into result.
+     */
+    private static void log(double[] values, double[] result)
+    {
+        for (int i = 0; i < values.length; i++)
+            result[i] = Math.log(values[i]);
+    }
+
+    /**
+     * Stores the exponentials of the values into result.
+     */
+    private static void exp(double[] values, double[] result)
+    {
+        for (int i = 0; i < values.length; i++)
+            result[i] = Math.exp(values[i]);
+    }
+
+    /**
+     * Calculates the activity coefficients into gamma using the activity
+     * method of the model.
+     */
+    private void calculateActivity(double T, double[] x, double[] gamma, CallState state)
+    {
+        state.telemetry.countActivityCall();
+
+        if (bufferedActCalculator != null)
+        {
+            bufferedActCalculator.calculateActivity(T, x, actMethodParams, gamma, state.actWorkspace);
+            return;
+        }
+
+        if (reentrantActCalculator != null)
+        {
+            System.arraycopy(reentrantActCalculator.calculateActivity(T, x, actMethodParams),
+                0, gamma, 0, numOfComps);
+            return;
+        }
+
+        synchronized (hostContext)
+        {
+            hostContext.setTemperature(T);
+            hostContext.setLiquidMoleFractions(x);
+            System.arraycopy(actCalculator.calculateActivity(actMethodParams), 0, gamma, 0, numOfComps);
+        }
+    }
+
+    /**
+     * Calculates the fugacity coefficients into phi using the fugacity
+     * method of the model.
+     */
+    private void calculateFugacity(double T, double P, double[] y, double[] Psat, double[] phi,
+        CallState state)
+    {
+        state.telemetry.countFugacityCall();
+
+        if (bufferedFugCalculator != null)
+        {
+            bufferedFugCalculator.calculateFugacity(T, P, y, Psat, phi, state.fugWorkspace);
+            return;
+        }
+
+        if (reentrantFugCalculator != null)
+        {
+            System.arraycopy(reentrantFugCalculator.calculateFugacity(T, P, y, Psat),
+                0, phi, 0, numOfComps);
+            return;
+        }
+
+        synchronized (hostContext)
+        {
+            hostContext.setTemperature(T);
+            hostContext.setVapourMoleFractions(y);
+            System.arraycopy(fugCalculator.calculateFugacity(T, P, Psat), 0, phi, 0, numOfComps);
+        }
+    }
+
+    /**
+     * State of one calculation: its telemetry and the workspaces of the
+     * calculators, which are made once so that the iterations do not
+     * allocate memory. The buffers for the analytic derivatives are made
+     * when they are first needed.
+     */
+    private class CallState
+    {
+        final SolverTelemetry telemetry = new SolverTelemetry();
+        final Object actWorkspace = (bufferedActCalculator == null) ? null
+                                  : bufferedActCalculator.createWorkspace();
+        final Object fugWorkspace = (bufferedFugCalculator == null) ? null
+                                  : bufferedFugCalculator.createWorkspace();
+        double[] lnValues = null;
+        double[] dPsat = null;
+        double[] dLnGamma = null;
+        double[] dLnPhi = null;
+    }
+}
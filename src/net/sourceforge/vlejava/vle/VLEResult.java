@@ -0,0 +1,192 @@
+/*
+ * Result of a VLE calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle;
+
+/**
+ * Result of a VLE calculation. The objects of this class are immutable,
+ * the mole fraction arrays are copied on the way in and on the way out.
+ */
+public class VLEResult
+{
+    private final double   temperature;
+    private final double   pressure;
+    private final double   vapFraction;
+    private final double[] liqMoleFracs;
+    private final double[] vapMoleFracs;
+    private final double[] gamma;
+    private final double[] phi;
+    private final SolverTelemetry telemetry;
+
+    /**
+     * Creates the result.
+     * @param T Temperature in degree Celsius
+     * @param P Pressure in kPa
+     * @param vapFraction Vapour fraction of the mixture
+     * @param liqMoleFracs Liquid mole fractions
+     * @param vapMoleFracs Vapour mole fractions
+     * @param gamma Activity coefficients
+     * @param phi Fugacity coefficients
+     * @param telemetry Convergence record of the solver
+     */
+    public VLEResult(double T, double P, double vapFraction,
+        double[] liqMoleFracs, double[] vapMoleFracs, double[] gamma, double[] phi,
+        SolverTelemetry telemetry)
+    {
+        this.temperature  = T;
+        this.pressure     = P;
+        this.vapFraction  = vapFraction;
+        this.liqMoleFracs = (double[]) liqMoleFracs.clone();
+        this.vapMoleFracs = (double[]) vapMoleFracs.clone();
+        this.gamma        = (double[]) gamma.clone();
+        this.phi          = (double[]) phi.clone();
+        this.telemetry    = telemetry;
+    }
+
+    /**
+     * Extrapolates linearly from two results to make the starting guess
+     * for the next point of a sweep. The temperature, pressure and mole
+     * fractions are extrapolated as they are, the activity and fugacity
+     * coefficients through their logarithms so that they stay positive.
+     * @param prev The result before the last one
+     * @param last The last result
+     * @param ratio Size of the next step relative to the last one
+     */
+    public static VLEResult extrapolate(VLEResult prev, VLEResult last, double ratio)
+    {
+        int i = 0;
+        int numOfComps = last.liqMoleFracs.length;
+        double[] x = new double[numOfComps];
+        double[] y = new double[numOfComps];
+        double[] gamma = new double[numOfComps];
+        double[] phi = new double[numOfComps];
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            x[i] = last.liqMoleFracs[i] + ratio * (last.liqMoleFracs[i] - prev.liqMoleFracs[i]);
+            y[i] = last.vapMoleFracs[i] + ratio * (last.vapMoleFracs[i] - prev.vapMoleFracs[i]);
+            gamma[i] = last.gamma[i] * Math.pow(last.gamma[i] / prev.gamma[i], ratio);
+            phi[i] = last.phi[i] * Math.pow(last.phi[i] / prev.phi[i], ratio);
+        }
+
+        normalize(x);
+        normalize(y);
+
+        return new VLEResult(last.temperature + ratio * (last.temperature - prev.temperature),
+            last.pressure + ratio * (last.pressure - prev.pressure),
+            last.vapFraction, x, y, gamma, phi, new SolverTelemetry());
+    }
+
+    /**
+     * Clips the extrapolated mole fractions to non-negative values
+     * and scales them to add up to 1.
+     */
+    private static void normalize(double[] fracs)
+    {
+        int i = 0;
+        double sum = 0;
+
+        for (i = 0; i < fracs.length; i++)
+        {
+            if (fracs[i] < 0) fracs[i] = 0;
+            sum += fracs[i];
+        }
+
+        if (sum > 0)
+        {
+            for (i = 0; i < fracs.length; i++)
+                fracs[i] = fracs[i] / sum;
+        }
+    }
+
+    /**
+     * Returns the temperature in degree Celsius.
+     */
+    public double getTemperature()
+    {
+        return temperature;
+    }
+
+    /**
+     * Returns the pressure in kPa.
+     */
+    public double getPressure()
+    {
+        return pressure;
+    }
+
+    /**
+     * Returns the vapour fraction of the mixture. It is 0 for bubble
+     * points and 1 for dew points.
+     */
+    public double getVapourFraction()
+    {
+        return vapFraction;
+    }
+
+    /**
+     * Returns the liquid mole fractions of the components.
+     */
+    public double[] getLiquidMoleFractions()
+    {
+        return (double[]) liqMoleFracs.clone();
+    }
+
+    /**
+     * Returns the vapour mole fractions of the components.
+     */
+    public double[] getVapourMoleFractions()
+    {
+        return (double[]) vapMoleFracs.clone();
+    }
+
+    /**
+     * Returns the activity coefficients at the result.
+     */
+    public double[] getActivityCoefficients()
+    {
+        return (double[]) gamma.clone();
+    }
+
+    /**
+     * Returns the fugacity coefficients at the result.
+     */
+    public double[] getFugacityCoefficients()
+    {
+        return (double[]) phi.clone();
+    }
+
+    /**
+     * Returns the number of iterations taken by the solver.
+     */
+    public int getIterations()
+    {
+        return telemetry.getOuterIterations();
+    }
+
+    /**
+     * Returns the convergence record of the solver.
+     */
+    public SolverTelemetry getTelemetry()
+    {
+        return telemetry;
+    }
+
+    public String toString()
+    {
+        StringBuffer sbfOut = new StringBuffer("");
+
+        sbfOut.append("VLEResult: ");
+        sbfOut.append("T = "          ).append(temperature).append(", ");
+        sbfOut.append("P = "          ).append(pressure   ).append(", ");
+        sbfOut.append("vapFraction = ").append(vapFraction).append(", ");
+        sbfOut.append("iterations = " ).append(telemetry.getOuterIterations()).append(", ");
+        sbfOut.append("converged = "  ).append(telemetry.isConverged());
+
+        return sbfOut.toString();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Helper for the parameter lists of the multicomponent activity methods.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import java.util.*;
+
+/**
+ * Helper for the parameter lists of the multicomponent activity methods.
+ * Binary parameters are named like "Wilson-a12", with the components
+ * numbered from 1, so that the names of binary systems match the demo
+ * data. From ten components on, the numbers are separated by "-".
+ */
+class ActivityParams
+{
+    /**
+     * Returns the name of the parameter of the pair (i, j),
+     * with i and j counted from 0.
+     */
+    static String pairName(String prefix, int i, int j, int numOfComps)
+    {
+        return prefix + (i + 1) + ((numOfComps > 9) ? "-" : "") + (j + 1);
+    }
+
+    /**
+     * Adds the names of the parameters of all ordered pairs (i, j)
+     * with i != j, in the order read by readPairs().
+     */
+    static void addPairNames(ArrayList paramList, String prefix, int numOfComps)
+    {
+        for (int i = 0; i < numOfComps; i++)
+            for (int j = 0; j < numOfComps; j++)
+                if (i != j) paramList.add(pairName(prefix, i, j, numOfComps));
+    }
+
+    /**
+     * Adds the names of the parameters of all unordered pairs (i, j)
+     * with i < j, in the order read by readSymmetricPairs().
+     */
+    static void addSymmetricPairNames(ArrayList paramList, String prefix, int numOfComps)
+    {
+        for (int i = 0; i < numOfComps; i++)
+            for (int j = i + 1; j < numOfComps; j++)
+                paramList.add(pairName(prefix, i, j, numOfComps));
+    }
+
+    /**
+     * Adds the names of the parameters of the components.
+     */
+    static void addComponentNames(ArrayList paramList, String prefix, int numOfComps)
+    {
+        for (int i = 0; i < numOfComps; i++)
+            paramList.add(prefix + (i + 1));
+    }
+
+    /**
+     * Returns a parameter as double.
+     */
+    static double get(Object[] params, int index)
+    {
+        return ((Double) params[index]).doubleValue();
+    }
+
+    /**
+     * Reads the parameters of all ordered pairs into the matrix, stored by
+     * rows, starting at the given index. The diagonal is set to 0.
+     * @return Index of the next parameter
+     */
+    static int readPairs(Object[] params, int index, int numOfComps, double[] matrix)
+    {
+        for (int i = 0; i < numOfComps; i++)
+        {
+            for (int j = 0; j < numOfComps; j++)
+            {
+                if (i == j)
+                    matrix[i * numOfComps + j] = 0;
+                else
+                    matrix[i * numOfComps + j] = get(params, index++);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads the parameters of all unordered pairs into the symmetric
+     * matrix, stored by rows, starting at the given index. The diagonal
+     * is set to 0.
+     * @return Index of the next parameter
+     */
+    static int readSymmetricPairs(Object[] params, int index, int numOfComps, double[] matrix)
+    {
+        for (int i = 0; i < numOfComps; i++)
+        {
+            matrix[i * numOfComps + i] = 0;
+
+            for (int j = i + 1; j < numOfComps; j++)
+            {
+                matrix[i * numOfComps + j] = get(params, index++);
+                matrix[j * numOfComps + i] = matrix[i * numOfComps + j];
+            }
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Common implementation of the cubic equations of state for fugacity
+ * calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import net.sourceforge.vlejava.vle.*;
+import net.sourceforge.vlejava.util.MathUtils;
+
+/**
+ * Common implementation of the cubic equations of state of the form
+ * P = RT / (V - b) - a / ((V + epsilon b) (V + sigma b)), for fugacity
+ * calculation. An equation of state is defined by its constants and
+ * its temperature function alpha, so a subclass only has to supply them.
+ * The mixture parameters follow the usual mixing rules without binary
+ * interaction parameters.
+ */
+public abstract class CubicFugacityCalculator implements IBatchFugacityCalculator
+{
+    /** Maximum number of Newton steps used to polish the root. */
+    private final static int MAX_POLISH_STEPS = 3;
+    /** Relative residual up to which a nearly double root is taken as real. */
+    private final static double ROOT_TOLERANCE = 1E-12;
+
+    private double omegaA = 0;
+    private double omegaB = 0;
+    private double sigma = 0;
+    private double epsilon = 0;
+
+    private VLEContext context = null;
+    private int numOfComps = 0;
+
+    // Parameters of the components, sqrtAc is the square root of the
+    // a parameter without the temperature function alpha
+    private double[] sqrtAc = null;
+    private double[] b      = null;
+    private double[] Tc     = null;
+    private double[] omega  = null;
+
+    /**
+     * Creates the calculator for one equation of state.
+     * @param omegaA Constant of the a parameter
+     * @param omegaB Constant of the b parameter
+     * @param sigma Constant sigma of the equation
+     * @param epsilon Constant epsilon of the equation
+     */
+    protected CubicFugacityCalculator(double omegaA, double omegaB, double sigma, double epsilon)
+    {
+        this.omegaA = omegaA;
+        this.omegaB = omegaB;
+        this.sigma = sigma;
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Returns the square root of the temperature function alpha
+     * of a component.
+     * @param Tr Reduced temperature
+     * @param omega Acentric factor
+     */
+    protected abstract double sqrtAlpha(double Tr, double omega);
+
+    public void setContext(VLEContext context)
+    {
+        int i = 0;
+        ComponentData[] components = context.getComponents();
+
+        this.context = context;
+        numOfComps = components.length;
+
+        sqrtAc = new double[numOfComps];
+        b      = new double[numOfComps];
+        Tc     = new double[numOfComps];
+        omega  = new double[numOfComps];
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            sqrtAc[i] = Math.sqrt(omegaA * MathUtils.square(Constants.R_J_PER_MOL_K * components[i].Tc) / components[i].Pc / 1E5);
+            b[i]      = omegaB * Constants.R_J_PER_MOL_K * components[i].Tc / components[i].Pc / 1E5;
+            Tc[i]     = components[i].Tc;
+            omega[i]  = components[i].omega;
+        }
+    }
+
+    public double[] calculateFugacity(double T, double P, double[] Psat)
+    {
+        return calculateFugacity(T, P, context.getVapourMoleFractions(), Psat);
+    }
+
+    public double[] calculateFugacity(double T, double P, double[] vapMoleFracs, double[] Psat)
+    {
+        double[] phi = new double[numOfComps];
+
+        calculateFugacity(T, P, vapMoleFracs, Psat, phi, createWorkspace());
+        return phi;
+    }
+
+    /**
+     * Returns the arrays for the a parameters of the components
+     * at the temperature of the call.
+     */
+    public Object createWorkspace()
+    {
+        return new Workspace(numOfComps);
+    }
+
+    public void calculateFugacity(double T, double P, double[] vapMoleFracs, double[] Psat,
+        double[] phi, Object workspace)
+    {
+        int i = 0;
+        double[] sqrtA = ((Workspace) workspace).sqrtA;
+        double absT = T + Constants.K_C_DIFF;
+        double sqrtAo = 0;
+        double bo = 0;
+
+        // Without interaction parameters sum of y(i) y(j) sqrt(a(i) a(j))
+        // is the square of sum of y(i) sqrt(a(i))
+        for (i = 0; i < numOfComps; i++)
+        {
+            sqrtA[i] = sqrtAc[i] * sqrtAlpha(absT / Tc[i], omega[i]);
+            sqrtAo += vapMoleFracs[i] * sqrtA[i];
+            bo += vapMoleFracs[i] * b[i];
+        }
+
+        calculatePoint(T, P, sqrtAo, bo, sqrtA, Psat, phi, 0, 1);
+    }
+
+    /**
+     * Calculates the fugacity coefficients of a block of compositions.
+     * The mixture parameters of all points are summed first, component
+     * by component, and then the root is found for every point.
+     */
+    public void calculateFugacityBatch(double[] T, double[] P, double[] y, double[] Psat,
+        int count, double[] phi, Object workspace)
+    {
+        int i = 0;
+        int k = 0;
+        int ik = 0;
+        Workspace ws = (Workspace) workspace;
+
+        ws.ensureBatchSize(count);
+
+        for (k = 0; k < count; k++)
+        {
+            ws.batchSqrtAo[k] = 0;
+            ws.batchBo[k] = 0;
+        }
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            for (k = 0; k < count; k++)
+            {
+                ik = i * count + k;
+                ws.batchSqrtA[ik] = sqrtAc[i] * sqrtAlpha((T[k] + Constants.K_C_DIFF) / Tc[i], omega[i]);
+                ws.batchSqrtAo[k] += y[ik] * ws.batchSqrtA[ik];
+                ws.batchBo[k] += y[ik] * b[i];
+            }
+        }
+
+        for (k = 0; k < count; k++)
+            calculatePoint(T[k], P[k], ws.batchSqrtAo[k], ws.batchBo[k], ws.batchSqrtA, Psat, phi, k, count);
+    }
+
+    /**
+     * Calculates the fugacity coefficients of one point from its mixture
+     * parameters. The values of component i are at offset + i * stride
+     * in the arrays.
+     * @param sqrtAo Square root of the a parameter of the mixture
+     * @param bo The b parameter of the mixture
+     */
+    private void calculatePoint(double T, double P, double sqrtAo, double bo, double[] sqrtA,
+        double[] Psat, double[] phi, int offset, int stride)
+    {
+        int i = 0;
+        int index = 0;
+        double absT = T + Constants.K_C_DIFF;
+        double RT = Constants.R_J_PER_MOL_K * absT;
+        double capA = 0;
+        double capB = 0;
+        double Z = 0;
+        double lnZB = 0;
+        double logTerm = 0;
+        double bRatio = 0;
+        double lnPhi = 0;
+        double lnPsat = 0;
+
+        capA = sqrtAo * sqrtAo * P * 1000 / (RT * RT);
+        capB = bo * P * 1000 / RT;
+
+        Z = solveVapourRoot((sigma + epsilon - 1) * capB - 1,
+            capA + sigma * epsilon * capB * capB - (sigma + epsilon) * capB * (capB + 1),
+            -(capA * capB + sigma * epsilon * capB * capB * (capB + 1)));
+
+        lnZB = Math.log(Z - capB);
+        logTerm = capA / capB * Math.log((Z + sigma * capB) / (Z + epsilon * capB)) / (sigma - epsilon);
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            index = offset + i * stride;
+            bRatio = b[i] / bo;
+            lnPhi = bRatio * (Z - 1) - lnZB - (2 * sqrtA[index] / sqrtAo - bRatio) * logTerm;
+            lnPsat = b[i] * P * Psat[index] / MathUtils.square(Constants.R_J_PER_MOL_K * 1E5 * absT);
+
+            phi[index] = Math.exp(lnPhi - lnPsat);
+        }
+    }
+
+    /**
+     * Returns the largest real root of Z^3 + c2 Z^2 + c1 Z + c0 = 0, which
+     * is the compressibility factor of the vapour. The root is found in
+     * closed form, written so that it does not cancel or leave the domain
+     * of acos near a multiple root, and then polished by Newton steps.
+     */
+    static double solveVapourRoot(double c2, double c1, double c0)
+    {
+        double shift = c2 / 3;
+        double p = c1 - c2 * shift;
+        double q = (2 * shift * shift - c1) * shift + c0;
+        double disc = q * q / 4 + p * p * p / 27;
+        double r = 0;
+        double u = 0;
+        double t = 0;
+        double Z = 0;
+        double e = 0;
+        double otherZ = 0;
+
+        if (disc > 0)
+        {
+            // One real root. The larger of the two cube root terms is taken
+            // with the sign of -q, and the other follows from their product.
+            u = Math.cbrt(-q / 2 - ((q < 0) ? -Math.sqrt(disc) : Math.sqrt(disc)));
+            t = u - p / (3 * u);
+            Z = polishRoot(c2, c1, c0, t - shift);
+
+            // Near the boundary the rounding may have hidden a larger double
+            // root. The quotient Z^2 + e Z + c1 + Z e tells if there is one.
+            e = c2 + Z;
+            otherZ = polishRoot(c2, c1, c0, -e / 2 + Math.sqrt(Math.max(0, e * e / 4 - c1 - Z * e)));
+
+            if ((otherZ > Z) && isRoot(c2, c1, c0, otherZ))
+                Z = otherZ;
+        }
+        else
+        {
+            // Three real roots, the largest one has the smallest angle
+            if (p < 0)
+            {
+                r = Math.sqrt(-p / 3);
+                u = -q / (2 * r * r * r);
+                t = 2 * r * Math.cos(Math.acos(Math.max(-1, Math.min(1, u))) / 3);
+            }
+
+            Z = polishRoot(c2, c1, c0, t - shift);
+        }
+
+        return Z;
+    }
+
+    /**
+     * Improves a root of Z^3 + c2 Z^2 + c1 Z + c0 = 0 by Newton steps, as
+     * long as they reduce the residual.
+     */
+    private static double polishRoot(double c2, double c1, double c0, double Z)
+    {
+        int i = 0;
+        double f = ((Z + c2) * Z + c1) * Z + c0;
+        double df = 0;
+        double newZ = 0;
+        double newF = 0;
+
+        for (i = 0; (i < MAX_POLISH_STEPS) && (f != 0); i++)
+        {
+            df = (3 * Z + 2 * c2) * Z + c1;
+
+            if (df == 0)
+                break;
+
+            newZ = Z - f / df;
+            newF = ((newZ + c2) * newZ + c1) * newZ + c0;
+
+            // Near a multiple root the step may not help
+            if (Math.abs(newF) >= Math.abs(f))
+                break;
+
+            Z = newZ;
+            f = newF;
+        }
+
+        return Z;
+    }
+
+    /**
+     * Returns whether Z is a root of Z^3 + c2 Z^2 + c1 Z + c0 = 0 within
+     * the rounding of the terms.
+     */
+    private static boolean isRoot(double c2, double c1, double c0, double Z)
+    {
+        double f = ((Z + c2) * Z + c1) * Z + c0;
+        double scale = Math.abs(Z * Z * Z) + Math.abs(c2 * Z * Z) + Math.abs(c1 * Z) + Math.abs(c0);
+
+        return (Math.abs(f) <= ROOT_TOLERANCE * scale);
+    }
+
+    /**
+     * The a parameters of the components at the temperature of the call,
+     * and the arrays for the batch calculations, which grow to the
+     * largest block seen.
+     */
+    private static class Workspace
+    {
+        final double[] sqrtA;
+        double[] batchSqrtA = null;
+        double[] batchSqrtAo = null;
+        double[] batchBo = null;
+
+        Workspace(int numOfComps)
+        {
+            this.sqrtA = new double[numOfComps];
+        }
+
+        void ensureBatchSize(int count)
+        {
+            if ((batchBo != null) && (batchBo.length >= count))
+                return;
+
+            batchSqrtA = new double[sqrtA.length * count];
+            batchSqrtAo = new double[count];
+            batchBo = new double[count];
+        }
+    }
+}
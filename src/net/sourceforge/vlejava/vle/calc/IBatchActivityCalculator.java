@@ -0,0 +1,32 @@
+/*
+ * Interface for Activity Calculator which evaluates a block of
+ * compositions in one call.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Activity Calculator which evaluates a block of
+ * compositions in one call. The blocks are stored by component: the value
+ * of component i at point k is at index i * count + k, so that the loops
+ * over the points run through contiguous memory. Calculators which do not
+ * implement this interface are evaluated point by point by
+ * VLEModel.calcActivityBatch().
+ */
+public interface IBatchActivityCalculator extends IBufferedActivityCalculator
+{
+    /**
+     * Calculates the activity coefficients of a block of compositions.
+     * @param T Temperatures of the points in degree Celsius
+     * @param x Liquid mole fractions, component i of point k at i * count + k
+     * @param count Number of points
+     * @param params Parameter list for the method
+     * @param gamma Array receiving the activity coefficients, in the layout of x
+     * @param workspace Workspace made by createWorkspace()
+     */
+    public void calculateActivityBatch(double[] T, double[] x, int count, Object[] params,
+        double[] gamma, Object workspace);
+}
@@ -0,0 +1,33 @@
+/*
+ * Interface for Fugacity Calculator which evaluates a block of
+ * compositions in one call.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Fugacity Calculator which evaluates a block of
+ * compositions in one call. The blocks are stored by component: the value
+ * of component i at point k is at index i * count + k, so that the loops
+ * over the points run through contiguous memory. Calculators which do not
+ * implement this interface are evaluated point by point by
+ * VLEModel.calcFugacityBatch().
+ */
+public interface IBatchFugacityCalculator extends IBufferedFugacityCalculator
+{
+    /**
+     * Calculates the fugacity coefficients of a block of compositions.
+     * @param T Temperatures of the points in degree Celsius
+     * @param P Pressures of the points in kPa
+     * @param y Vapour mole fractions, component i of point k at i * count + k
+     * @param Psat Saturation pressures in kPa, in the layout of y
+     * @param count Number of points
+     * @param phi Array receiving the fugacity coefficients, in the layout of y
+     * @param workspace Workspace made by createWorkspace()
+     */
+    public void calculateFugacityBatch(double[] T, double[] P, double[] y, double[] Psat,
+        int count, double[] phi, Object workspace);
+}
@@ -0,0 +1,37 @@
+/*
+ * Interface for Activity Calculator which writes into arrays supplied by
+ * the caller. Implement this interface instead of
+ * IReentrantActivityCalculator to let the solver loops run without
+ * allocating memory.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Activity Calculator which writes into arrays supplied by
+ * the caller. The scratch memory the calculation needs is kept in a
+ * workspace made by createWorkspace(). A workspace belongs to one caller
+ * at a time, so one calculator can still be shared between threads.
+ */
+public interface IBufferedActivityCalculator extends IReentrantActivityCalculator
+{
+    /**
+     * Returns a new workspace for calculateActivity(), or null
+     * if no scratch memory is needed.
+     */
+    public Object createWorkspace();
+
+    /**
+     * Calculates the activity coefficients.
+     * @param T Temperature in degree Celsius
+     * @param x Liquid mole fractions
+     * @param params Parameter list for the method
+     * @param gamma Array receiving the activity coefficients
+     * @param workspace Workspace made by createWorkspace()
+     */
+    public void calculateActivity(double T, double[] x, Object[] params, double[] gamma,
+        Object workspace);
+}
@@ -0,0 +1,38 @@
+/*
+ * Interface for Fugacity Calculator which writes into arrays supplied by
+ * the caller. Implement this interface instead of
+ * IReentrantFugacityCalculator to let the solver loops run without
+ * allocating memory.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Fugacity Calculator which writes into arrays supplied by
+ * the caller. The scratch memory the calculation needs is kept in a
+ * workspace made by createWorkspace(). A workspace belongs to one caller
+ * at a time, so one calculator can still be shared between threads.
+ */
+public interface IBufferedFugacityCalculator extends IReentrantFugacityCalculator
+{
+    /**
+     * Returns a new workspace for calculateFugacity(), or null
+     * if no scratch memory is needed.
+     */
+    public Object createWorkspace();
+
+    /**
+     * Calculates the fugacity coefficients.
+     * @param T Temperature in degree Celsius
+     * @param P Pressure in kPa
+     * @param y Vapour mole fractions
+     * @param Psat Saturation pressures of the components in kPa
+     * @param phi Array receiving the fugacity coefficients
+     * @param workspace Workspace made by createWorkspace()
+     */
+    public void calculateFugacity(double T, double P, double[] y, double[] Psat, double[] phi,
+        Object workspace);
+}
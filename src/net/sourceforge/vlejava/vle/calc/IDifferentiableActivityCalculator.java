@@ -0,0 +1,35 @@
+/*
+ * Interface for Activity Calculator which also gives the derivatives of
+ * the activity coefficients. Implement this interface instead of
+ * IBufferedActivityCalculator to let the solvers use analytic derivatives.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Activity Calculator which also gives the partial
+ * derivatives of ln gamma. The mole fractions are taken as independent
+ * variables, so the derivative in x(j) is taken with the other mole
+ * fractions fixed. Calculators which do not implement this interface get
+ * numerical derivatives from VLEModel.calcLnActivity().
+ */
+public interface IDifferentiableActivityCalculator extends IBufferedActivityCalculator
+{
+    /**
+     * Calculates the logarithms of the activity coefficients and their
+     * partial derivatives.
+     * @param T Temperature in degree Celsius
+     * @param x Liquid mole fractions
+     * @param params Parameter list for the method
+     * @param lnGamma Array receiving ln gamma
+     * @param dT Array receiving d(ln gamma(i))/dT, or null if not needed
+     * @param dx Array receiving d(ln gamma(i))/dx(j) at index i * n + j,
+     *           or null if not needed
+     * @param workspace Workspace made by createWorkspace()
+     */
+    public void calculateLnActivity(double T, double[] x, Object[] params, double[] lnGamma,
+        double[] dT, double[] dx, Object workspace);
+}
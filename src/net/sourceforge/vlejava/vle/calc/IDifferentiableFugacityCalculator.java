@@ -0,0 +1,40 @@
+/*
+ * Interface for Fugacity Calculator which also gives the derivatives of
+ * the fugacity coefficients. Implement this interface instead of
+ * IBufferedFugacityCalculator to let the solvers use analytic derivatives.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Fugacity Calculator which also gives the partial
+ * derivatives of ln phi. The fugacity coefficients depend on the
+ * saturation pressures, so the derivative in T is the total one with
+ * the saturation pressures following the temperature. The mole fractions
+ * are taken as independent variables. Calculators which do not implement
+ * this interface get numerical derivatives from VLEModel.calcLnFugacity().
+ */
+public interface IDifferentiableFugacityCalculator extends IBufferedFugacityCalculator
+{
+    /**
+     * Calculates the logarithms of the fugacity coefficients and their
+     * partial derivatives.
+     * @param T Temperature in degree Celsius
+     * @param P Pressure in kPa
+     * @param y Vapour mole fractions
+     * @param Psat Saturation pressures of the components in kPa
+     * @param dPsat d(Psat)/dT of the components, needed with dT only
+     * @param lnPhi Array receiving ln phi
+     * @param dT Array receiving d(ln phi(i))/dT, or null if not needed
+     * @param dP Array receiving d(ln phi(i))/dP, or null if not needed
+     * @param dy Array receiving d(ln phi(i))/dy(j) at index i * n + j,
+     *           or null if not needed
+     * @param workspace Workspace made by createWorkspace()
+     */
+    public void calculateLnFugacity(double T, double P, double[] y, double[] Psat,
+        double[] dPsat, double[] lnPhi, double[] dT, double[] dP, double[] dy,
+        Object workspace);
+}
@@ -0,0 +1,27 @@
+/*
+ * Interface for Activity Calculator which can be shared between threads.
+ * Implement this interface instead of IActivityCalculator to let one
+ * configured calculator serve many calculations at the same time.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Activity Calculator which can be shared between threads.
+ * The context passed to setContext() is used only for the component data;
+ * the compositions are passed with every call, so the implementation must
+ * not keep any per-call state in its fields.
+ */
+public interface IReentrantActivityCalculator extends IActivityCalculator
+{
+    /**
+     * Calculates the activity coefficients.
+     * @param T Temperature in degree Celsius
+     * @param x Liquid mole fractions
+     * @param params Parameter list for the method
+     */
+    public double[] calculateActivity(double T, double[] x, Object[] params);
+}
@@ -0,0 +1,28 @@
+/*
+ * Interface for Fugacity Calculator which can be shared between threads.
+ * Implement this interface instead of IFugacityCalculator to let one
+ * configured calculator serve many calculations at the same time.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Interface for Fugacity Calculator which can be shared between threads.
+ * The context passed to setContext() is used only for the component data;
+ * the compositions are passed with every call, so the implementation must
+ * not keep any per-call state in its fields.
+ */
+public interface IReentrantFugacityCalculator extends IFugacityCalculator
+{
+    /**
+     * Calculates the fugacity coefficients.
+     * @param T Temperature in degree Celsius
+     * @param P Pressure in kPa
+     * @param y Vapour mole fractions
+     * @param Psat Saturation pressures of the components in kPa
+     */
+    public double[] calculateFugacity(double T, double P, double[] y, double[] Psat);
+}
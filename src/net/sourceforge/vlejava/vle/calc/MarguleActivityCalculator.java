@@ -13,7 +13,8 @@ import net.sourceforge.vlejava.vle.*;
 /**
  * Margule's equation implementation for activity calculation.
  */
-public class MarguleActivityCalculator implements IActivityCalculator
+public class MarguleActivityCalculator
+    implements IDifferentiableActivityCalculator, IBatchActivityCalculator
 {
     private VLEContext context = null;
 
@@ -24,16 +25,72 @@ public class MarguleActivityCalculator implements IActivityCalculator
 
     public double[] calculateActivity(Object[] params)
     {
-        double A12 = ((Double) params[0]).doubleValue();
-        double A21 = ((Double) params[1]).doubleValue();
+        return calculateActivity(0, context.getLiquidMoleFractions(), params);
+    }
 
+    public double[] calculateActivity(double T, double[] x, Object[] params)
+    {
         double[] gamma = new double[2];
-        double[] x = context.getLiquidMoleFractions();
+
+        calculateActivity(T, x, params, gamma, null);
+        return gamma;
+    }
+
+    public Object createWorkspace()
+    {
+        return null;
+    }
+
+    public void calculateActivity(double T, double[] x, Object[] params, double[] gamma,
+        Object workspace)
+    {
+        double A12 = ((Double) params[0]).doubleValue();
+        double A21 = ((Double) params[1]).doubleValue();
 
         gamma[0] = Math.exp(x[1] * x[1] * (A12 + 2 * (A21 - A12) * x[0]));
         gamma[1] = Math.exp(x[0] * x[0] * (A21 + 2 * (A12 - A21) * x[1]));
+    }
 
-        return gamma;
+    public void calculateActivityBatch(double[] T, double[] x, int count, Object[] params,
+        double[] gamma, Object workspace)
+    {
+        double A12 = ((Double) params[0]).doubleValue();
+        double A21 = ((Double) params[1]).doubleValue();
+        double x1 = 0;
+        double x2 = 0;
+
+        for (int k = 0; k < count; k++)
+        {
+            x1 = x[k];
+            x2 = x[count + k];
+            gamma[k] = Math.exp(x2 * x2 * (A12 + 2 * (A21 - A12) * x1));
+            gamma[count + k] = Math.exp(x1 * x1 * (A21 + 2 * (A12 - A21) * x2));
+        }
+    }
+
+    public void calculateLnActivity(double T, double[] x, Object[] params, double[] lnGamma,
+        double[] dT, double[] dx, Object workspace)
+    {
+        double A12 = ((Double) params[0]).doubleValue();
+        double A21 = ((Double) params[1]).doubleValue();
+
+        lnGamma[0] = x[1] * x[1] * (A12 + 2 * (A21 - A12) * x[0]);
+        lnGamma[1] = x[0] * x[0] * (A21 + 2 * (A12 - A21) * x[1]);
+
+        // The parameters do not depend on the temperature
+        if (dT != null)
+        {
+            dT[0] = 0;
+            dT[1] = 0;
+        }
+
+        if (dx != null)
+        {
+            dx[0] = 2 * x[1] * x[1] * (A21 - A12);
+            dx[1] = 2 * x[1] * (A12 + 2 * (A21 - A12) * x[0]);
+            dx[2] = 2 * x[0] * (A21 + 2 * (A12 - A21) * x[1]);
+            dx[3] = 2 * x[0] * x[0] * (A12 - A21);
+        }
     }
 
     public ArrayList getParamList(int numOfComps)
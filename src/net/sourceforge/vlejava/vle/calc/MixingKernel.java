@@ -0,0 +1,132 @@
+/*
+ * Kernel for the sums of the mixing rules.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import java.util.Random;
+import net.sourceforge.vlejava.util.MessageHandler;
+
+/**
+ * Kernel for the sums of the mixing rules. This class is the scalar
+ * implementation. A faster one may be loaded at run time, selected by the
+ * system property vlejava.kernel:
+ * <ul>
+ * <li>auto (default) - VectorMixingKernel if it can be loaded, else scalar
+ * <li>vector - VectorMixingKernel, with a message if it is not available
+ * <li>scalar - this class
+ * </ul>
+ * VectorMixingKernel uses the Java Vector API. It is kept in the
+ * src-incubator directory, as it needs the module jdk.incubator.vector
+ * to compile and run. The results of a loaded kernel are compared with
+ * those of this class before it is used, and it is not used unless they
+ * are the same to the last bit.
+ */
+public class MixingKernel
+{
+    private final static String KERNEL_PROPERTY = "vlejava.kernel";
+    private final static String VECTOR_KERNEL_CLASS = "net.sourceforge.vlejava.vle.calc.VectorMixingKernel";
+
+    private static MixingKernel instance = null;
+
+    /**
+     * Returns the kernel selected for the application.
+     */
+    public static synchronized MixingKernel getInstance()
+    {
+        if (instance == null)
+            instance = loadKernel(System.getProperty(KERNEL_PROPERTY, "auto"));
+
+        return instance;
+    }
+
+    /**
+     * Loads the kernel of the given name.
+     */
+    private static MixingKernel loadKernel(String name)
+    {
+        if (name.equals("scalar"))
+            return new MixingKernel();
+
+        try
+        {
+            MixingKernel kernel = (MixingKernel) Class.forName(VECTOR_KERNEL_CLASS).newInstance();
+
+            checkKernel(kernel);
+            return kernel;
+        }
+        catch (Throwable th)
+        {
+            // The class or the module jdk.incubator.vector is not available
+            if (name.equals("vector"))
+                System.err.println(MessageHandler.getString("errVectorKernelLoadFail") + ": " + th);
+        }
+
+        return new MixingKernel();
+    }
+
+    /**
+     * Compares the sums of a kernel with those of the scalar kernel, on
+     * vectors of all lengths up to 64 whose products partly cancel.
+     * @throws IllegalStateException If any sum differs in any bit
+     */
+    private static void checkKernel(MixingKernel kernel)
+    {
+        int i = 0;
+        int n = 0;
+        int size = 64;
+        double[] a = new double[size];
+        double[] b = new double[size];
+        MixingKernel scalar = new MixingKernel();
+        Random random = new Random(size);
+
+        for (i = 0; i < size; i++)
+        {
+            a[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(7) - 3);
+            b[i] = random.nextDouble() - 0.5;
+        }
+
+        for (n = 1; n <= size; n++)
+        {
+            if (Double.doubleToLongBits(kernel.dot(a, size - n, b, n))
+                != Double.doubleToLongBits(scalar.dot(a, size - n, b, n)))
+            {
+                throw new IllegalStateException(kernel.getName() + " differs from the scalar kernel for n = " + n);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the kernel.
+     */
+    public String getName()
+    {
+        return "scalar";
+    }
+
+    /**
+     * Returns the sum of a[offset + i] * b[i] over i from 0 to n - 1.
+     */
+    public double dot(double[] a, int offset, double[] b, int n)
+    {
+        double sum = 0;
+
+        for (int i = 0; i < n; i++)
+            sum += a[offset + i] * b[i];
+
+        return sum;
+    }
+
+    /**
+     * Multiplies the n x n matrix m, stored by rows, with the vector v.
+     * @param result Array receiving the product
+     */
+    public void multiply(double[] m, double[] v, double[] result, int n)
+    {
+        for (int i = 0; i < n; i++)
+            result[i] = dot(m, i * n, v, n);
+    }
+}
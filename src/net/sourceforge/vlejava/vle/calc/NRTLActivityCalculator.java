@@ -0,0 +1,479 @@
+/*
+ * NRTL equation implementation for activity calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import java.util.*;
+import net.sourceforge.vlejava.vle.*;
+
+/**
+ * NRTL equation implementation for activity calculation, for any number
+ * of components. The parameters are the energies a(i, j) in J/mol and the
+ * non-randomness factors alpha(i, j) = alpha(j, i), with
+ * tau(i, j) = a(i, j) / RT and G(i, j) = exp(-alpha(i, j) tau(i, j)).
+ * The matrices are kept for the last temperature and parameter array, so
+ * the parameter array must not be changed after it is handed to the
+ * calculator.
+ */
+public class NRTLActivityCalculator
+    implements IDifferentiableActivityCalculator, IBatchActivityCalculator
+{
+    private VLEContext context = null;
+    private MixingKernel kernel = null;
+    private int numOfComps = 0;
+
+    // Matrices of the last temperature a calculation started from, shared
+    // by all callers
+    private volatile Matrices cache = null;
+
+    public void setContext(VLEContext context)
+    {
+        this.context = context;
+        kernel = MixingKernel.getInstance();
+        numOfComps = context.getNumOfComps();
+        cache = null;
+    }
+
+    public double[] calculateActivity(Object[] params)
+    {
+        return calculateActivity(context.getTemperature(), context.getLiquidMoleFractions(), params);
+    }
+
+    public double[] calculateActivity(double T, double[] x, Object[] params)
+    {
+        double[] gamma = new double[numOfComps];
+
+        calculateActivity(T, x, params, gamma, createWorkspace());
+        return gamma;
+    }
+
+    /**
+     * Returns the arrays for the sums over the mole fractions, and for
+     * the matrices of the temperatures after the first.
+     */
+    public Object createWorkspace()
+    {
+        return new Workspace(numOfComps);
+    }
+
+    /**
+     * Calculates the activity coefficients. With D(j) = sum over k of
+     * x(k) G(k, j), eps(j) = sum over k of x(k) tau(k, j) G(k, j) / D(j)
+     * and w(j) = x(j) / D(j), ln gamma(i) is
+     * eps(i) + sum over j of tau(i, j) G(i, j) w(j) - G(i, j) w(j) eps(j).
+     * D and eps are computed once for all components, so that a call takes
+     * O(n^2) operations.
+     */
+    public void calculateActivity(double T, double[] x, Object[] params, double[] gamma,
+        Object workspace)
+    {
+        Workspace ws = (Workspace) workspace;
+        Matrices m = getMatrices(T, params, ws);
+
+        calculateSums(m, x, ws);
+
+        for (int i = 0; i < numOfComps; i++)
+            gamma[i] = Math.exp(lnGamma(m, ws, i));
+    }
+
+    public void calculateLnActivity(double T, double[] x, Object[] params, double[] lnGamma,
+        double[] dT, double[] dx, Object workspace)
+    {
+        int i = 0;
+        Workspace ws = (Workspace) workspace;
+        Matrices m = getMatrices(T, params, ws);
+
+        calculateSums(m, x, ws);
+
+        for (i = 0; i < numOfComps; i++)
+            lnGamma[i] = lnGamma(m, ws, i);
+
+        if (dT != null)
+            calculateDT(m, x, ws, dT);
+
+        if (dx != null)
+            calculateDx(m, x, ws, dx);
+    }
+
+    /**
+     * Calculates the activity coefficients of a block of compositions.
+     * Each run of points at the same temperature shares the matrices, and
+     * the sums are formed for the whole run with the points in the inner
+     * loop.
+     */
+    public void calculateActivityBatch(double[] T, double[] x, int count, Object[] params,
+        double[] gamma, Object workspace)
+    {
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        int ik = 0;
+        int jk = 0;
+        int start = 0;
+        int end = 0;
+        double g = 0;
+        double tg = 0;
+        Matrices m = null;
+        Workspace ws = (Workspace) workspace;
+
+        ws.ensureBatchSize(count);
+        double[] D   = ws.batchD;
+        double[] eps = ws.batchEps;
+        double[] w   = ws.batchW;
+        double[] we  = ws.batchWEps;
+        double[] t1  = ws.batchTerm1;
+        double[] t2  = ws.batchTerm2;
+
+        for (start = 0; start < count; start = end)
+        {
+            m = getMatrices(T[start], params, ws);
+
+            end = start + 1;
+            while ((end < count) && (T[end] == T[start]))
+                end++;
+
+            for (j = 0; j < numOfComps; j++)
+            {
+                for (k = start; k < end; k++)
+                {
+                    D[j * count + k] = 0;
+                    eps[j * count + k] = 0;
+                }
+            }
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                for (j = 0; j < numOfComps; j++)
+                {
+                    g = m.G[i * numOfComps + j];
+                    tg = m.TG[i * numOfComps + j];
+
+                    for (k = start; k < end; k++)
+                    {
+                        D[j * count + k] += g * x[i * count + k];
+                        eps[j * count + k] += tg * x[i * count + k];
+                    }
+                }
+            }
+
+            for (jk = 0; jk < numOfComps * count; jk += count)
+            {
+                for (k = start; k < end; k++)
+                {
+                    eps[jk + k] = eps[jk + k] / D[jk + k];
+                    w[jk + k] = x[jk + k] / D[jk + k];
+                    we[jk + k] = w[jk + k] * eps[jk + k];
+                }
+            }
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                for (k = start; k < end; k++)
+                {
+                    t1[k] = 0;
+                    t2[k] = 0;
+                }
+
+                for (j = 0; j < numOfComps; j++)
+                {
+                    g = m.G[i * numOfComps + j];
+                    tg = m.TG[i * numOfComps + j];
+
+                    for (k = start; k < end; k++)
+                    {
+                        t1[k] += tg * w[j * count + k];
+                        t2[k] += g * we[j * count + k];
+                    }
+                }
+
+                for (k = start; k < end; k++)
+                {
+                    ik = i * count + k;
+                    gamma[ik] = Math.exp(eps[ik] + t1[k] - t2[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates D, eps, w and w eps of the composition into the workspace.
+     */
+    private void calculateSums(Matrices m, double[] x, Workspace ws)
+    {
+        kernel.multiply(m.GT, x, ws.D, numOfComps);
+        kernel.multiply(m.TGT, x, ws.eps, numOfComps);
+
+        for (int j = 0; j < numOfComps; j++)
+        {
+            ws.eps[j] = ws.eps[j] / ws.D[j];
+            ws.w[j] = x[j] / ws.D[j];
+            ws.wEps[j] = ws.w[j] * ws.eps[j];
+        }
+    }
+
+    /**
+     * Returns ln gamma of component i from the sums in the workspace.
+     */
+    private double lnGamma(Matrices m, Workspace ws, int i)
+    {
+        return ws.eps[i] + kernel.dot(m.TG, i * numOfComps, ws.w, numOfComps)
+            - kernel.dot(m.G, i * numOfComps, ws.wEps, numOfComps);
+    }
+
+    /**
+     * Calculates d(ln gamma)/dT, from the derivatives of D and eps and of
+     * the matrices, in O(n^2) operations.
+     */
+    private void calculateDT(Matrices m, double[] x, Workspace ws, double[] dT)
+    {
+        int i = 0;
+        int j = 0;
+        int ij = 0;
+        double dD = 0;
+        double dN = 0;
+        double sum = 0;
+        double[] dEps = ws.dEps;
+        double[] dDByD = ws.dDByD;
+
+        // d(eps) = (dN - eps dD) / D
+        for (j = 0; j < numOfComps; j++)
+        {
+            dD = 0;
+            dN = 0;
+
+            for (i = 0; i < numOfComps; i++)
+            {
+                dD += x[i] * m.dG[i * numOfComps + j];
+                dN += x[i] * m.dTG[i * numOfComps + j];
+            }
+
+            dEps[j] = (dN - ws.eps[j] * dD) / ws.D[j];
+            dDByD[j] = dD / ws.D[j];
+        }
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            sum = dEps[i];
+
+            for (j = 0; j < numOfComps; j++)
+            {
+                ij = i * numOfComps + j;
+                sum += ws.w[j] * (m.dTG[ij] - m.dG[ij] * ws.eps[j] - m.G[ij] * dEps[j]
+                    - (m.TG[ij] - m.G[ij] * ws.eps[j]) * dDByD[j]);
+            }
+
+            dT[i] = sum;
+        }
+    }
+
+    /**
+     * Calculates d(ln gamma(i))/dx(l), which is
+     * G(l, i) (tau(l, i) - eps(i)) / D(i) + G(i, l) (tau(i, l) - eps(l)) / D(l)
+     * - sum over j of x(j) G(i, j) G(l, j) (tau(i, j) + tau(l, j) - 2 eps(j)) / D(j)^2.
+     */
+    private void calculateDx(Matrices m, double[] x, Workspace ws, double[] dx)
+    {
+        int i = 0;
+        int j = 0;
+        int l = 0;
+        int li = 0;
+        int il = 0;
+        double sum = 0;
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            for (l = 0; l < numOfComps; l++)
+            {
+                li = l * numOfComps + i;
+                il = i * numOfComps + l;
+                sum = (m.TG[li] - m.G[li] * ws.eps[i]) / ws.D[i]
+                    + (m.TG[il] - m.G[il] * ws.eps[l]) / ws.D[l];
+
+                for (j = 0; j < numOfComps; j++)
+                    sum -= ws.w[j] / ws.D[j]
+                        * (m.TG[i * numOfComps + j] * m.G[l * numOfComps + j]
+                        + m.G[i * numOfComps + j] * m.TG[l * numOfComps + j]
+                        - 2 * m.G[i * numOfComps + j] * m.G[l * numOfComps + j] * ws.eps[j]);
+
+                dx[il] = sum;
+            }
+        }
+    }
+
+    /**
+     * Returns the matrices of the given temperature and parameters. The
+     * matrices of the first temperature of a calculation are published in
+     * the cache, as all the calculations of an isothermal sweep start from
+     * the same one. The temperatures which follow, as in the iterations of
+     * BUBL T and DEW T, are calculated into the buffers of the workspace,
+     * so that the iterations do not allocate memory.
+     */
+    private Matrices getMatrices(double T, Object[] params, Workspace ws)
+    {
+        Matrices m = ws.matrices;
+
+        if ((m != null) && (m.T == T) && (m.params == params))
+            return m;
+
+        m = cache;
+
+        if ((m == null) || (m.T != T) || (m.params != params))
+        {
+            if (ws.matrices == null)
+            {
+                m = new Matrices(numOfComps);
+                calculateMatrices(T, params, m, ws);
+                cache = m;
+            }
+            else
+            {
+                if (ws.ownMatrices == null)
+                    ws.ownMatrices = new Matrices(numOfComps);
+
+                m = ws.ownMatrices;
+                calculateMatrices(T, params, m, ws);
+            }
+        }
+
+        ws.matrices = m;
+        return m;
+    }
+
+    /**
+     * Calculates the matrices of the given temperature and parameters,
+     * reading the parameters into the arrays of the workspace.
+     */
+    private void calculateMatrices(double T, Object[] params, Matrices m, Workspace ws)
+    {
+        int ij = 0;
+        int n = numOfComps;
+        double absT = T + Constants.K_C_DIFF;
+        double RT = Constants.R_J_PER_MOL_K * absT;
+        double tau = 0;
+        double[] a = ws.a;
+        double[] alpha = ws.alpha;
+
+        ActivityParams.readSymmetricPairs(params, ActivityParams.readPairs(params, 0, n, a), n, alpha);
+
+        for (ij = 0; ij < n * n; ij++)
+        {
+            tau = a[ij] / RT;
+            m.G[ij] = Math.exp(-alpha[ij] * tau);
+            m.TG[ij] = tau * m.G[ij];
+
+            // d(tau)/dT = -tau / T and d(G)/dT = alpha tau G / T
+            m.dG[ij] = alpha[ij] * m.TG[ij] / absT;
+            m.dTG[ij] = m.TG[ij] * (alpha[ij] * tau - 1) / absT;
+
+            m.GT[(ij % n) * n + ij / n] = m.G[ij];
+            m.TGT[(ij % n) * n + ij / n] = m.TG[ij];
+        }
+
+        m.T = T;
+        m.params = params;
+    }
+
+    public ArrayList getParamList(int numOfComps)
+    {
+        ArrayList paramList = new ArrayList();
+
+        ActivityParams.addPairNames(paramList, "NRTL-a", numOfComps);
+
+        // Binary systems have one alpha, named as in the demo data
+        if (numOfComps == 2)
+            paramList.add("NRTL-alpha");
+        else
+            ActivityParams.addSymmetricPairNames(paramList, "NRTL-alpha", numOfComps);
+
+        return paramList;
+    }
+
+    public boolean isNonBinarySystemAllowed()
+    {
+        return true;
+    }
+
+    /**
+     * G, tau G, their transposes and their temperature derivatives at one
+     * temperature. The object is not changed after it is published in the
+     * cache; the one owned by a workspace is calculated again for every new
+     * temperature.
+     */
+    private static class Matrices
+    {
+        double T = Double.NaN;
+        Object[] params = null;
+        final double[] G;
+        final double[] TG;
+        final double[] GT;
+        final double[] TGT;
+        final double[] dG;
+        final double[] dTG;
+
+        Matrices(int numOfComps)
+        {
+            this.G = new double[numOfComps * numOfComps];
+            this.TG = new double[numOfComps * numOfComps];
+            this.GT = new double[numOfComps * numOfComps];
+            this.TGT = new double[numOfComps * numOfComps];
+            this.dG = new double[numOfComps * numOfComps];
+            this.dTG = new double[numOfComps * numOfComps];
+        }
+    }
+
+    /**
+     * The sums of one call, the parameters and the matrices of the current
+     * temperature, and the arrays for the batch calculations, which grow to
+     * the largest block seen. The matrices are either shared ones from the
+     * cache, or ownMatrices, which are made when the temperature first
+     * changes.
+     */
+    private static class Workspace
+    {
+        final double[] D;
+        final double[] eps;
+        final double[] w;
+        final double[] wEps;
+        final double[] dEps;
+        final double[] dDByD;
+        final double[] a;
+        final double[] alpha;
+        Matrices matrices = null;
+        Matrices ownMatrices = null;
+        double[] batchD = null;
+        double[] batchEps = null;
+        double[] batchW = null;
+        double[] batchWEps = null;
+        double[] batchTerm1 = null;
+        double[] batchTerm2 = null;
+
+        Workspace(int numOfComps)
+        {
+            this.D = new double[numOfComps];
+            this.eps = new double[numOfComps];
+            this.w = new double[numOfComps];
+            this.wEps = new double[numOfComps];
+            this.dEps = new double[numOfComps];
+            this.dDByD = new double[numOfComps];
+            this.a = new double[numOfComps * numOfComps];
+            this.alpha = new double[numOfComps * numOfComps];
+        }
+
+        void ensureBatchSize(int count)
+        {
+            if ((batchTerm1 != null) && (batchTerm1.length >= count))
+                return;
+
+            batchD = new double[D.length * count];
+            batchEps = new double[D.length * count];
+            batchW = new double[D.length * count];
+            batchWEps = new double[D.length * count];
+            batchTerm1 = new double[count];
+            batchTerm2 = new double[count];
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Soave-Redlich-Kwong equation implementation for fugacity calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+/**
+ * Soave-Redlich-Kwong equation implementation for fugacity calculation.
+ */
+public class SRKFugacityCalculator extends CubicFugacityCalculator
+{
+    private final static double COEF_A = 0.42748;
+    private final static double COEF_B = 0.08664;
+    private final static double COEF_M0 = 0.480;
+    private final static double COEF_M1 = 1.574;
+    private final static double COEF_M2 = -0.176;
+
+    public SRKFugacityCalculator()
+    {
+        super(COEF_A, COEF_B, 1, 0);
+    }
+
+    /**
+     * Returns 1 + m (1 - sqrt(Tr)) with Soave's m of the acentric factor.
+     */
+    protected double sqrtAlpha(double Tr, double omega)
+    {
+        double m = COEF_M0 + (COEF_M1 + COEF_M2 * omega) * omega;
+
+        return 1 + m * (1 - Math.sqrt(Tr));
+    }
+}
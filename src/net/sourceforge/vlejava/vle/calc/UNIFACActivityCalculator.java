@@ -0,0 +1,377 @@
+/*
+ * UNIFAC method implementation for activity calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import java.util.*;
+import net.sourceforge.vlejava.vle.*;
+import net.sourceforge.vlejava.util.MessageHandler;
+
+/**
+ * UNIFAC method implementation for activity calculation, for any number
+ * of components. The activity coefficients are predicted from the groups
+ * of the components, so the method has no parameters. Only the groups
+ * present in the system are used: their data and interaction parameters
+ * are copied into flat arrays when the context is set, and
+ * Psi(m, n) = exp(-a(m, n) / T) is kept for the last temperature.
+ */
+public class UNIFACActivityCalculator implements IBufferedActivityCalculator
+{
+    private VLEContext context = null;
+    private MixingKernel kernel = null;
+    private int numOfComps = 0;
+    private int numOfGroups = 0;
+
+    // Data of the groups present in the system. nu is the count of each
+    // group in each component by rows, nuT is its transpose.
+    private double[] Qk = null;
+    private double[] a  = null;
+    private double[] nu  = null;
+    private double[] nuT = null;
+
+    // Combinatorial terms of the components and the group area fractions
+    // of the pure components, by rows
+    private double[] r = null;
+    private double[] q = null;
+    private double[] pureTheta = null;
+
+    // Psi and residual terms of the first temperature of the last
+    // calculation, shared by all callers
+    private volatile Psi cache = null;
+
+    /**
+     * Sets the context and prepares the group data of the components.
+     * @throws IllegalArgumentException If the group data can not be
+     *         loaded, or the groups of a component or the interaction
+     *         parameters of two groups are not available
+     */
+    public void setContext(VLEContext context)
+    {
+        int i = 0;
+        int j = 0;
+        int m = 0;
+        int n = 0;
+        double sum = 0;
+        ComponentData[] components = context.getComponents();
+        GroupTables tables = getGroupTables();
+        HashMap groupData = tables.getGroups();
+        double[][] unifacData = tables.getUnifacData();
+        String[][] groupNames = new String[components.length][];
+        int[][] groupCounts = new int[components.length][];
+        ArrayList groups = new ArrayList();
+        GroupData group = null;
+        GroupData other = null;
+
+        this.context = context;
+        kernel = MixingKernel.getInstance();
+        numOfComps = components.length;
+        cache = null;
+
+        // Collect the groups present in the system
+        for (i = 0; i < numOfComps; i++)
+        {
+            groupNames[i] = tables.getGroupNames(components[i].compId);
+            groupCounts[i] = tables.getGroupCounts(components[i].compId);
+
+            if (groupNames[i] == null)
+                throw new IllegalArgumentException(MessageHandler.getString("errUnifacGroupsNA",
+                    new Object[] { components[i].name }));
+
+            for (j = 0; j < groupNames[i].length; j++)
+            {
+                group = (GroupData) groupData.get(groupNames[i][j]);
+
+                if (group == null)
+                    throw new IllegalArgumentException(MessageHandler.getString("errUnifacGroupsNA",
+                        new Object[] { components[i].name }));
+
+                if (!groups.contains(group))
+                    groups.add(group);
+            }
+        }
+
+        numOfGroups = groups.size();
+        Qk = new double[numOfGroups];
+        a  = new double[numOfGroups * numOfGroups];
+
+        for (m = 0; m < numOfGroups; m++)
+        {
+            group = (GroupData) groups.get(m);
+            Qk[m] = group.qk;
+
+            for (n = 0; n < numOfGroups; n++)
+            {
+                other = (GroupData) groups.get(n);
+                a[m * numOfGroups + n] = unifacData[group.uniGroupNo][other.uniGroupNo];
+
+                if (Double.isNaN(a[m * numOfGroups + n]))
+                    throw new IllegalArgumentException(MessageHandler.getString("errUnifacParamNA",
+                        new Object[] { group.groupName, other.groupName }));
+            }
+        }
+
+        nu  = new double[numOfComps * numOfGroups];
+        nuT = new double[numOfGroups * numOfComps];
+        r   = new double[numOfComps];
+        q   = new double[numOfComps];
+        pureTheta = new double[numOfComps * numOfGroups];
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            for (j = 0; j < groupNames[i].length; j++)
+            {
+                group = (GroupData) groupData.get(groupNames[i][j]);
+                m = groups.indexOf(group);
+
+                nu[i * numOfGroups + m] += groupCounts[i][j];
+                nuT[m * numOfComps + i] = nu[i * numOfGroups + m];
+                r[i] += groupCounts[i][j] * group.rk;
+                q[i] += groupCounts[i][j] * group.qk;
+            }
+
+            sum = 0;
+
+            for (m = 0; m < numOfGroups; m++)
+                sum += nu[i * numOfGroups + m] * Qk[m];
+
+            for (m = 0; m < numOfGroups; m++)
+                pureTheta[i * numOfGroups + m] = nu[i * numOfGroups + m] * Qk[m] / sum;
+        }
+    }
+
+    /**
+     * Returns the group data, which is loaded on the first call.
+     * @throws IllegalArgumentException If the group data can not be loaded
+     */
+    static GroupTables getGroupTables()
+    {
+        try
+        {
+            return VLEContext.getGroupTables();
+        }
+        catch (VLEException ex)
+        {
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+    }
+
+    public double[] calculateActivity(Object[] params)
+    {
+        return calculateActivity(context.getTemperature(), context.getLiquidMoleFractions(), params);
+    }
+
+    public double[] calculateActivity(double T, double[] x, Object[] params)
+    {
+        double[] gamma = new double[numOfComps];
+
+        calculateActivity(T, x, params, gamma, createWorkspace());
+        return gamma;
+    }
+
+    /**
+     * Returns the arrays for the group fractions and sums, and for Psi of
+     * the temperatures after the first.
+     */
+    public Object createWorkspace()
+    {
+        return new Workspace(numOfGroups);
+    }
+
+    /**
+     * Calculates the activity coefficients. The combinatorial part takes
+     * O(n) operations, the residual part one sum over the groups for the
+     * group fractions and two products with Psi.
+     */
+    public void calculateActivity(double T, double[] x, Object[] params, double[] gamma,
+        Object workspace)
+    {
+        int i = 0;
+        int m = 0;
+        double sumRx = 0;
+        double sumQx = 0;
+        double sumTheta = 0;
+        double V = 0;
+        double F = 0;
+        double lnGammaC = 0;
+        double lnGammaR = 0;
+        Workspace ws = (Workspace) workspace;
+
+        // Psi is found first, as the pure component terms use the workspace
+        Psi psi = getPsi(T, ws);
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            sumRx += r[i] * x[i];
+            sumQx += q[i] * x[i];
+        }
+
+        // Group area fractions of the mixture, the group mole fractions
+        // need not be normalized as theta is
+        for (m = 0; m < numOfGroups; m++)
+        {
+            ws.theta[m] = Qk[m] * kernel.dot(nuT, m * numOfComps, x, numOfComps);
+            sumTheta += ws.theta[m];
+        }
+
+        for (m = 0; m < numOfGroups; m++)
+            ws.theta[m] = ws.theta[m] / sumTheta;
+
+        calculateLnGroupGamma(psi, ws);
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            V = r[i] / sumRx;
+            F = q[i] / sumQx;
+            lnGammaC = 1 - V + Math.log(V) - 5 * q[i] * (1 - V / F + Math.log(V / F));
+            lnGammaR = kernel.dot(nu, i * numOfGroups, ws.lnGroupGamma, numOfGroups) - psi.pureLnGamma[i];
+
+            gamma[i] = Math.exp(lnGammaC + lnGammaR);
+        }
+    }
+
+    /**
+     * Calculates ln Gamma(k) = Q(k) (1 - ln s(k) - sum over m of
+     * Psi(k, m) theta(m) / s(m)) into the workspace, where
+     * s(k) = sum over m of theta(m) Psi(m, k), for theta in the workspace.
+     */
+    private void calculateLnGroupGamma(Psi psi, Workspace ws)
+    {
+        int m = 0;
+
+        for (m = 0; m < numOfGroups; m++)
+            ws.s[m] = kernel.dot(psi.PsiT, m * numOfGroups, ws.theta, numOfGroups);
+
+        for (m = 0; m < numOfGroups; m++)
+            ws.thetaByS[m] = ws.theta[m] / ws.s[m];
+
+        kernel.multiply(psi.Psi, ws.thetaByS, ws.lnGroupGamma, numOfGroups);
+
+        for (m = 0; m < numOfGroups; m++)
+            ws.lnGroupGamma[m] = Qk[m] * (1 - Math.log(ws.s[m]) - ws.lnGroupGamma[m]);
+    }
+
+    /**
+     * Returns Psi of the given temperature with the residual terms of the
+     * pure components. Psi of the first temperature a workspace sees is
+     * shared through the cache, and at the temperatures after it, as in
+     * BUBL T, Psi is calculated again in the buffers of the workspace.
+     */
+    private Psi getPsi(double T, Workspace ws)
+    {
+        Psi psi = ws.psi;
+
+        if ((psi != null) && (psi.T == T))
+            return psi;
+
+        psi = cache;
+
+        if ((psi == null) || (psi.T != T))
+        {
+            if (ws.psi == null)
+            {
+                psi = new Psi(numOfComps, numOfGroups);
+                calculatePsi(T, psi, ws);
+                cache = psi;
+            }
+            else
+            {
+                if (ws.ownPsi == null)
+                    ws.ownPsi = new Psi(numOfComps, numOfGroups);
+
+                psi = ws.ownPsi;
+                calculatePsi(T, psi, ws);
+            }
+        }
+
+        ws.psi = psi;
+        return psi;
+    }
+
+    /**
+     * Calculates Psi of the given temperature and the residual terms of
+     * the pure components, using the group fractions of the workspace.
+     */
+    private void calculatePsi(double T, Psi psi, Workspace ws)
+    {
+        int i = 0;
+        int mn = 0;
+        double absT = T + Constants.K_C_DIFF;
+
+        for (mn = 0; mn < numOfGroups * numOfGroups; mn++)
+        {
+            psi.Psi[mn] = Math.exp(-a[mn] / absT);
+            psi.PsiT[(mn % numOfGroups) * numOfGroups + mn / numOfGroups] = psi.Psi[mn];
+        }
+
+        // Sum over the groups of nu(k) ln Gamma(k) of the pure components
+        for (i = 0; i < numOfComps; i++)
+        {
+            System.arraycopy(pureTheta, i * numOfGroups, ws.theta, 0, numOfGroups);
+            calculateLnGroupGamma(psi, ws);
+            psi.pureLnGamma[i] = kernel.dot(nu, i * numOfGroups, ws.lnGroupGamma, numOfGroups);
+        }
+
+        psi.T = T;
+    }
+
+    /**
+     * The method has no parameters, the groups come with the components.
+     */
+    public ArrayList getParamList(int numOfComps)
+    {
+        return new ArrayList();
+    }
+
+    public boolean isNonBinarySystemAllowed()
+    {
+        return true;
+    }
+
+    /**
+     * Psi, its transpose and the residual terms of the pure components at
+     * one temperature. The object is not changed after it is published
+     * in the cache; the one owned by a workspace is calculated again for
+     * every new temperature.
+     */
+    private static class Psi
+    {
+        double T = Double.NaN;
+        final double[] Psi;
+        final double[] PsiT;
+        final double[] pureLnGamma;
+
+        Psi(int numOfComps, int numOfGroups)
+        {
+            this.Psi = new double[numOfGroups * numOfGroups];
+            this.PsiT = new double[numOfGroups * numOfGroups];
+            this.pureLnGamma = new double[numOfComps];
+        }
+    }
+
+    /**
+     * The group area fractions and sums of one call, and Psi of the
+     * current temperature: either a shared one from the cache, or ownPsi,
+     * which is made when the temperature first changes.
+     */
+    private static class Workspace
+    {
+        final double[] theta;
+        final double[] s;
+        final double[] thetaByS;
+        final double[] lnGroupGamma;
+        Psi psi = null;
+        Psi ownPsi = null;
+
+        Workspace(int numOfGroups)
+        {
+            this.theta = new double[numOfGroups];
+            this.s = new double[numOfGroups];
+            this.thetaByS = new double[numOfGroups];
+            this.lnGroupGamma = new double[numOfGroups];
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * UNIQUAC equation implementation for activity calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import java.util.*;
+import net.sourceforge.vlejava.vle.*;
+import net.sourceforge.vlejava.util.MessageHandler;
+
+/**
+ * UNIQUAC equation implementation for activity calculation, for any number
+ * of components. The parameters are the energies a(i, j) in J/mol, with
+ * tau(i, j) = exp(-a(i, j) / RT). The volume and area parameters r and q
+ * of the components are the sums of their UNIFAC groups. tau is kept for
+ * the last temperature and parameter array, so the parameter array must
+ * not be changed after it is handed to the calculator.
+ */
+public class UNIQUACActivityCalculator implements IBufferedActivityCalculator
+{
+    /** Coordination number. */
+    private final static double Z = 10;
+
+    private VLEContext context = null;
+    private MixingKernel kernel = null;
+    private int numOfComps = 0;
+
+    // Structural terms of the components
+    private double[] r = null;
+    private double[] q = null;
+    private double[] l = null;
+
+    // tau of the last temperature a calculation started from, shared by
+    // all callers
+    private volatile Tau cache = null;
+
+    /**
+     * Sets the context and calculates r, q and l of the components.
+     * @throws IllegalArgumentException If the group data can not be
+     *         loaded, or the groups of a component are not available
+     */
+    public void setContext(VLEContext context)
+    {
+        int i = 0;
+        int j = 0;
+        ComponentData[] components = context.getComponents();
+        GroupTables tables = UNIFACActivityCalculator.getGroupTables();
+        HashMap groupData = tables.getGroups();
+        String[] groupNames = null;
+        int[] groupCounts = null;
+        GroupData group = null;
+
+        this.context = context;
+        kernel = MixingKernel.getInstance();
+        numOfComps = components.length;
+        cache = null;
+
+        r = new double[numOfComps];
+        q = new double[numOfComps];
+        l = new double[numOfComps];
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            groupNames = tables.getGroupNames(components[i].compId);
+            groupCounts = tables.getGroupCounts(components[i].compId);
+
+            if (groupNames == null)
+                throw new IllegalArgumentException(MessageHandler.getString("errUnifacGroupsNA",
+                    new Object[] { components[i].name }));
+
+            for (j = 0; j < groupNames.length; j++)
+            {
+                group = (GroupData) groupData.get(groupNames[j]);
+
+                if (group == null)
+                    throw new IllegalArgumentException(MessageHandler.getString("errUnifacGroupsNA",
+                        new Object[] { components[i].name }));
+
+                r[i] += groupCounts[j] * group.rk;
+                q[i] += groupCounts[j] * group.qk;
+            }
+
+            l[i] = Z / 2 * (r[i] - q[i]) - (r[i] - 1);
+        }
+    }
+
+    public double[] calculateActivity(Object[] params)
+    {
+        return calculateActivity(context.getTemperature(), context.getLiquidMoleFractions(), params);
+    }
+
+    public double[] calculateActivity(double T, double[] x, Object[] params)
+    {
+        double[] gamma = new double[numOfComps];
+
+        calculateActivity(T, x, params, gamma, createWorkspace());
+        return gamma;
+    }
+
+    /**
+     * Returns the arrays for the area fractions and sums, and for tau of
+     * the temperatures after the first.
+     */
+    public Object createWorkspace()
+    {
+        return new Workspace(numOfComps);
+    }
+
+    /**
+     * Calculates the activity coefficients. With the area fractions theta,
+     * s(j) = sum over k of theta(k) tau(k, j), the residual part of
+     * ln gamma(i) is q(i) (1 - ln s(i) - sum over j of tau(i, j) theta(j) / s(j)).
+     * s is computed once for all components, so that a call takes
+     * O(n^2) operations.
+     */
+    public void calculateActivity(double T, double[] x, Object[] params, double[] gamma,
+        Object workspace)
+    {
+        int i = 0;
+        double sumRx = 0;
+        double sumQx = 0;
+        double sumLx = 0;
+        double V = 0;
+        double F = 0;
+        double lnGammaC = 0;
+        double lnGammaR = 0;
+        Workspace ws = (Workspace) workspace;
+        Tau tau = getTau(T, params, ws);
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            sumRx += r[i] * x[i];
+            sumQx += q[i] * x[i];
+            sumLx += l[i] * x[i];
+        }
+
+        for (i = 0; i < numOfComps; i++)
+            ws.theta[i] = q[i] * x[i] / sumQx;
+
+        kernel.multiply(tau.tauT, ws.theta, ws.s, numOfComps);
+
+        for (i = 0; i < numOfComps; i++)
+            ws.thetaByS[i] = ws.theta[i] / ws.s[i];
+
+        kernel.multiply(tau.tau, ws.thetaByS, ws.t, numOfComps);
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            // V and F are phi / x and theta / x of the component
+            V = r[i] / sumRx;
+            F = q[i] / sumQx;
+            lnGammaC = Math.log(V) + Z / 2 * q[i] * Math.log(F / V) + l[i] - V * sumLx;
+            lnGammaR = q[i] * (1 - Math.log(ws.s[i]) - ws.t[i]);
+
+            gamma[i] = Math.exp(lnGammaC + lnGammaR);
+        }
+    }
+
+    /**
+     * Returns tau of the given temperature and parameters. Only tau of the
+     * first temperature a workspace sees goes to the shared cache; when the
+     * temperature changes, as in BUBL T, tau is recalculated in place in
+     * the workspace.
+     */
+    private Tau getTau(double T, Object[] params, Workspace ws)
+    {
+        Tau tau = ws.tau;
+
+        if ((tau != null) && (tau.T == T) && (tau.params == params))
+            return tau;
+
+        tau = cache;
+
+        if ((tau == null) || (tau.T != T) || (tau.params != params))
+        {
+            if (ws.tau == null)
+            {
+                tau = new Tau(numOfComps);
+                calculateTau(T, params, tau, ws.a);
+                cache = tau;
+            }
+            else
+            {
+                if (ws.ownTau == null)
+                    ws.ownTau = new Tau(numOfComps);
+
+                tau = ws.ownTau;
+                calculateTau(T, params, tau, ws.a);
+            }
+        }
+
+        ws.tau = tau;
+        return tau;
+    }
+
+    /**
+     * Calculates tau of the given temperature and parameters.
+     * @param a Array for the energy parameters
+     */
+    private void calculateTau(double T, Object[] params, Tau tau, double[] a)
+    {
+        int ij = 0;
+        int n = numOfComps;
+        double RT = Constants.R_J_PER_MOL_K * (T + Constants.K_C_DIFF);
+
+        ActivityParams.readPairs(params, 0, n, a);
+
+        for (ij = 0; ij < n * n; ij++)
+        {
+            tau.tau[ij] = Math.exp(-a[ij] / RT);
+            tau.tauT[(ij % n) * n + ij / n] = tau.tau[ij];
+        }
+
+        tau.T = T;
+        tau.params = params;
+    }
+
+    public ArrayList getParamList(int numOfComps)
+    {
+        ArrayList paramList = new ArrayList();
+
+        ActivityParams.addPairNames(paramList, "UNIQUAC-a", numOfComps);
+        return paramList;
+    }
+
+    public boolean isNonBinarySystemAllowed()
+    {
+        return true;
+    }
+
+    /**
+     * tau and its transpose at one temperature. The object is not changed
+     * after it is published in the cache; the one owned by a workspace is
+     * calculated again for every new temperature.
+     */
+    private static class Tau
+    {
+        double T = Double.NaN;
+        Object[] params = null;
+        final double[] tau;
+        final double[] tauT;
+
+        Tau(int numOfComps)
+        {
+            this.tau = new double[numOfComps * numOfComps];
+            this.tauT = new double[numOfComps * numOfComps];
+        }
+    }
+
+    /**
+     * The area fractions and sums of one call, the energy parameters and
+     * tau of the current temperature. tau is either a shared one from the
+     * cache, or ownTau, which is made when the temperature first changes.
+     */
+    private static class Workspace
+    {
+        final double[] theta;
+        final double[] s;
+        final double[] thetaByS;
+        final double[] t;
+        final double[] a;
+        Tau tau = null;
+        Tau ownTau = null;
+
+        Workspace(int numOfComps)
+        {
+            this.theta = new double[numOfComps];
+            this.s = new double[numOfComps];
+            this.thetaByS = new double[numOfComps];
+            this.t = new double[numOfComps];
+            this.a = new double[numOfComps * numOfComps];
+        }
+    }
+}
@@ -14,7 +14,8 @@ import net.sourceforge.vlejava.util.MathUtils;
 /**
  * VanLaar equation implementation for activity calculation.
  */
-public class VanlaarActivityCalculator implements IActivityCalculator
+public class VanlaarActivityCalculator
+    implements IDifferentiableActivityCalculator, IBatchActivityCalculator
 {
     private VLEContext context = null;
 
@@ -25,16 +26,78 @@ public class VanlaarActivityCalculator implements IActivityCalculator
 
     public double[] calculateActivity(Object[] params)
     {
-        double A12 = ((Double) params[0]).doubleValue();
-        double A21 = ((Double) params[1]).doubleValue();
+        return calculateActivity(0, context.getLiquidMoleFractions(), params);
+    }
 
+    public double[] calculateActivity(double T, double[] x, Object[] params)
+    {
         double[] gamma = new double[2];
-        double[] x = context.getLiquidMoleFractions();
+
+        calculateActivity(T, x, params, gamma, null);
+        return gamma;
+    }
+
+    public Object createWorkspace()
+    {
+        return null;
+    }
+
+    public void calculateActivity(double T, double[] x, Object[] params, double[] gamma,
+        Object workspace)
+    {
+        double A12 = ((Double) params[0]).doubleValue();
+        double A21 = ((Double) params[1]).doubleValue();
 
         gamma[0] = Math.exp(A12 / MathUtils.square(1 + (A12 * x[0]) / (A21 * x[1])));
         gamma[1] = Math.exp(A21 / MathUtils.square(1 + (A21 * x[1]) / (A12 * x[0])));
+    }
 
-        return gamma;
+    public void calculateActivityBatch(double[] T, double[] x, int count, Object[] params,
+        double[] gamma, Object workspace)
+    {
+        double A12 = ((Double) params[0]).doubleValue();
+        double A21 = ((Double) params[1]).doubleValue();
+        double x1 = 0;
+        double x2 = 0;
+
+        for (int k = 0; k < count; k++)
+        {
+            x1 = x[k];
+            x2 = x[count + k];
+            gamma[k] = Math.exp(A12 / MathUtils.square(1 + (A12 * x1) / (A21 * x2)));
+            gamma[count + k] = Math.exp(A21 / MathUtils.square(1 + (A21 * x2) / (A12 * x1)));
+        }
+    }
+
+    /**
+     * Calculates ln gamma and its derivatives. With D = A12 x1 + A21 x2,
+     * ln gamma1 = A12 (A21 x2 / D)^2 and ln gamma2 = A21 (A12 x1 / D)^2.
+     */
+    public void calculateLnActivity(double T, double[] x, Object[] params, double[] lnGamma,
+        double[] dT, double[] dx, Object workspace)
+    {
+        double A12 = ((Double) params[0]).doubleValue();
+        double A21 = ((Double) params[1]).doubleValue();
+        double D = A12 * x[0] + A21 * x[1];
+        double coef = 2 * MathUtils.square(A12 * A21) / (D * D * D);
+
+        lnGamma[0] = A12 / MathUtils.square(1 + (A12 * x[0]) / (A21 * x[1]));
+        lnGamma[1] = A21 / MathUtils.square(1 + (A21 * x[1]) / (A12 * x[0]));
+
+        // The parameters do not depend on the temperature
+        if (dT != null)
+        {
+            dT[0] = 0;
+            dT[1] = 0;
+        }
+
+        if (dx != null)
+        {
+            dx[0] = -coef * x[1] * x[1];
+            dx[1] = coef * x[0] * x[1];
+            dx[2] = coef * x[0] * x[1];
+            dx[3] = -coef * x[0] * x[0];
+        }
     }
 
     public ArrayList getParamList(int numOfComps)
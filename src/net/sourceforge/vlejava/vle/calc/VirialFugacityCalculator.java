@@ -12,7 +12,8 @@ import net.sourceforge.vlejava.vle.*;
 /**
  * Virial equation implementation for fugacity calculation.
  */
-public class VirialFugacityCalculator implements IFugacityCalculator
+public class VirialFugacityCalculator
+    implements IDifferentiableFugacityCalculator, IBatchFugacityCalculator
 {
     private final static double VIR_COEF_OA = 0.083;
     private final static double VIR_COEF_OB = 0.422;
@@ -22,98 +23,386 @@ public class VirialFugacityCalculator implements IFugacityCalculator
     private final static double VIR_COEF_IC = -4.2;
 
     private VLEContext context = null;
+    private MixingKernel kernel = null;
+    private int numOfComps = 0;
 
-    private double[][] omega = null;
-    private double[][] Tc    = null;
-    private double[][] Zc    = null;
-    private double[][] Pc    = null;
-    private double[][] Vc    = null;
+    // Pair properties in flat arrays, pair (i, j) at index i * numOfComps + j
+    private double[] omega = null;
+    private double[] Tc    = null;
+    private double[] RTcPc = null;
+
+    // Coefficients of the last temperature a calculation started from,
+    // shared by all callers
+    private volatile Coefficients cache = null;
 
 
     public void setContext(VLEContext context)
     {
         int i = 0;
         int j = 0;
+        int ij = 0;
+        double Zc = 0;
+        double Vc = 0;
+        double Pc = 0;
 
         this.context = context;
-        int numOfComps = context.getNumOfComps();
+        kernel = MixingKernel.getInstance();
+        numOfComps = context.getNumOfComps();
         ComponentData[] components = context.getComponents();
 
-        omega = new double[numOfComps][numOfComps];
-        Zc    = new double[numOfComps][numOfComps];
-        Tc    = new double[numOfComps][numOfComps];
-        Vc    = new double[numOfComps][numOfComps];
-        Pc    = new double[numOfComps][numOfComps];
+        omega = new double[numOfComps * numOfComps];
+        Tc    = new double[numOfComps * numOfComps];
+        RTcPc = new double[numOfComps * numOfComps];
+        cache = null;
 
         for(i = 0; i < numOfComps; i++)
         {
-            omega[i][i] = components[i].omega;
-            Zc[i][i]    = components[i].Zc;
-            Tc[i][i]    = components[i].Tc;
-            Vc[i][i]    = components[i].Vc;
-            Pc[i][i]    = components[i].Pc;
+            for(j = 0; j < numOfComps; j++)
+            {
+                ij = i * numOfComps + j;
+
+                if(i == j)
+                {
+                    omega[ij] = components[i].omega;
+                    Tc[ij]    = components[i].Tc;
+                    Pc        = components[i].Pc;
+                }
+                else
+                {
+                    omega[ij] = (components[i].omega + components[j].omega) / 2;
+                    Zc        = (components[i].Zc + components[j].Zc) / 2;
+                    Tc[ij]    = Math.sqrt(components[i].Tc * components[j].Tc);
+                    Vc        = Math.exp(3 * Math.log((Math.exp(Math.log(components[i].Vc) / 3) + Math.exp(Math.log(components[j].Vc) / 3)) / 2));
+                    Pc        = (Constants.R_J_PER_KMOL_K * Zc * Tc[ij]) / Vc;
+                }
+
+                RTcPc[ij] = Constants.R_J_PER_KMOL_K * Tc[ij] / Pc;
+            }
         }
+    }
+
+    public double[] calculateFugacity(double T, double P, double[] Psat)
+    {
+        return calculateFugacity(T, P, context.getVapourMoleFractions(), Psat);
+    }
+
+    public double[] calculateFugacity(double T, double P, double[] vapMoleFracs, double[] Psat)
+    {
+        double[] phi = new double[numOfComps];
+
+        calculateFugacity(T, P, vapMoleFracs, Psat, phi, createWorkspace());
+        return phi;
+    }
+
+    /**
+     * Returns the arrays for the products of del with the mole fractions,
+     * and for the coefficients of the temperatures after the first.
+     */
+    public Object createWorkspace()
+    {
+        return new Workspace(numOfComps);
+    }
+
+    /**
+     * Calculates the fugacity coefficients. With
+     * del(j, k) = 2 B(j, k) - B(j, j) - B(k, k), the mixture term of
+     * component i is sum over j and k of y(j) y(k) (2 del(j, i) - del(j, k)),
+     * which is 2 sum(y) (del . y)(i) - y . del . y as del is symmetric. The
+     * mole fractions need not add up to 1, as during the iterations of the
+     * solvers. The product del . y takes O(n^2) operations and is done by
+     * the mixing kernel.
+     */
+    public void calculateFugacity(double T, double P, double[] vapMoleFracs, double[] Psat,
+        double[] phi, Object workspace)
+    {
+        int i = 0;
+        double sumY = 0;
+        double yDelY = 0;
+        double RT = Constants.R_J_PER_KMOL_K * (T + Constants.K_C_DIFF);
+
+        Coefficients coefs = getCoefficients(T, (Workspace) workspace);
+        double[] cb   = coefs.cb;
+        double[] delY = ((Workspace) workspace).delY;
+
+        kernel.multiply(coefs.del, vapMoleFracs, delY, numOfComps);
+        yDelY = kernel.dot(vapMoleFracs, 0, delY, numOfComps);
+
+        for(i = 0; i < numOfComps; i++)
+            sumY += vapMoleFracs[i];
 
         for(i = 0; i < numOfComps; i++)
+            phi[i] = Math.exp((cb[i * numOfComps + i] * (P - Psat[i]) + P / 2 * (2 * sumY * delY[i] - yDelY)) / RT);
+    }
+
+    /**
+     * Calculates the fugacity coefficients of a block of compositions.
+     * Each run of points at the same temperature shares the coefficients,
+     * and del . y is formed for the whole run with the points in the
+     * inner loop.
+     */
+    public void calculateFugacityBatch(double[] T, double[] P, double[] y, double[] Psat,
+        int count, double[] phi, Object workspace)
+    {
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        int ii = 0;
+        int start = 0;
+        int end = 0;
+        double del = 0;
+        double RT = 0;
+        Coefficients coefs = null;
+        Workspace ws = (Workspace) workspace;
+
+        ws.ensureBatchSize(count);
+        double[] delY = ws.batchDelY;
+        double[] yDelY = ws.batchYDelY;
+        double[] sumY = ws.batchSumY;
+
+        for(start = 0; start < count; start = end)
         {
-            for(j = 0; j < numOfComps; j++)
+            coefs = getCoefficients(T[start], ws);
+
+            end = start + 1;
+            while ((end < count) && (T[end] == T[start]))
+                end++;
+
+            for(k = start; k < end; k++)
             {
-                if(i != j)
+                yDelY[k] = 0;
+                sumY[k] = 0;
+            }
+
+            for(i = 0; i < numOfComps; i++)
+            {
+                for(k = start; k < end; k++)
+                    delY[i * count + k] = 0;
+
+                for(j = 0; j < numOfComps; j++)
                 {
-                    omega[i][j] = (omega[i][i] + omega[j][j]) / 2;
-                    Zc[i][j]    = (Zc[i][i] + Zc[j][j]) / 2;
-                    Tc[i][j]    = Math.sqrt(Tc[i][i] * Tc[j][j]);
-                    Vc[i][j]    = Math.exp(3 * Math.log((Math.exp(Math.log(Vc[i][i]) / 3) + Math.exp(Math.log(Vc[j][j]) / 3)) / 2));
-                    Pc[i][j]    = (Constants.R_J_PER_KMOL_K * Zc[i][j] * Tc[i][j]) / Vc[i][j];
+                    del = coefs.del[i * numOfComps + j];
+
+                    for(k = start; k < end; k++)
+                        delY[i * count + k] += del * y[j * count + k];
                 }
+
+                for(k = start; k < end; k++)
+                {
+                    yDelY[k] += y[i * count + k] * delY[i * count + k];
+                    sumY[k] += y[i * count + k];
+                }
+            }
+
+            RT = Constants.R_J_PER_KMOL_K * (T[start] + Constants.K_C_DIFF);
+
+            for(i = 0; i < numOfComps; i++)
+            {
+                ii = i * numOfComps + i;
+
+                for(k = start; k < end; k++)
+                    phi[i * count + k] = Math.exp((coefs.cb[ii] * (P[k] - Psat[i * count + k])
+                        + P[k] / 2 * (2 * sumY[k] * delY[i * count + k] - yDelY[k])) / RT);
             }
         }
     }
 
-    public double[] calculateFugacity(double T, double P, double[] Psat)
+    /**
+     * Calculates ln phi and its derivatives. With N(i) the numerator of
+     * ln phi(i) = N(i) / RT, the temperature derivative is
+     * (dN(i)/dT - N(i) / T) / RT, where dN(i)/dT follows from the
+     * derivatives of the virial coefficients and of the saturation pressure.
+     * As del is symmetric, d(y . del . y)/dy(k) is 2 (y . del)(k), and the
+     * derivative of the mixture term of component i by y(k) is
+     * 2 (del . y)(i) + 2 sum(y) del(i, k) - 2 (del . y)(k).
+     */
+    public void calculateLnFugacity(double T, double P, double[] vapMoleFracs, double[] Psat,
+        double[] dPsat, double[] lnPhi, double[] dT, double[] dP, double[] dy,
+        Object workspace)
     {
         int i = 0;
-        int j = 0;
         int k = 0;
-        int numOfComps = context.getNumOfComps();
+        int ii = 0;
+        double sumY = 0;
+        double yDelY = 0;
+        double dYDelY = 0;
+        double num = 0;
+        double absT = T + Constants.K_C_DIFF;
+        double RT = Constants.R_J_PER_KMOL_K * absT;
 
-        double[] phi = new double[numOfComps];
-        double[] vapMoleFracs = context.getVapourMoleFractions();
+        Coefficients coefs = getCoefficients(T, (Workspace) workspace);
+        double[] cb   = coefs.cb;
+        double[] del  = coefs.del;
+        double[] dcb  = coefs.dcb;
+        double[] delY  = ((Workspace) workspace).delY;
+        double[] dDelY = ((Workspace) workspace).dDelY;
 
-        double[][] bo  = new double[numOfComps][numOfComps];
-        double[][] bi  = new double[numOfComps][numOfComps];
-        double[][] cb  = new double[numOfComps][numOfComps];
-        double[][] del = new double[numOfComps][numOfComps];
+        kernel.multiply(del, vapMoleFracs, delY, numOfComps);
+        yDelY = kernel.dot(vapMoleFracs, 0, delY, numOfComps);
 
         for(i = 0; i < numOfComps; i++)
+            sumY += vapMoleFracs[i];
+
+        if (dT != null)
         {
-            for(j = 0; j < numOfComps; j++)
+            kernel.multiply(coefs.ddel, vapMoleFracs, dDelY, numOfComps);
+            dYDelY = kernel.dot(vapMoleFracs, 0, dDelY, numOfComps);
+        }
+
+        for(i = 0; i < numOfComps; i++)
+        {
+            ii = i * numOfComps + i;
+            num = cb[ii] * (P - Psat[i]) + P / 2 * (2 * sumY * delY[i] - yDelY);
+            lnPhi[i] = num / RT;
+
+            if (dT != null)
+                dT[i] = (dcb[ii] * (P - Psat[i]) - cb[ii] * dPsat[i] + P / 2 * (2 * sumY * dDelY[i] - dYDelY)
+                    - num / absT) / RT;
+
+            if (dP != null)
+                dP[i] = (cb[ii] + (2 * sumY * delY[i] - yDelY) / 2) / RT;
+        }
+
+        if (dy != null)
+        {
+            for(i = 0; i < numOfComps; i++)
+                for(k = 0; k < numOfComps; k++)
+                    dy[i * numOfComps + k] = P * (delY[i] + sumY * del[i * numOfComps + k] - delY[k]) / RT;
+        }
+    }
+
+    /**
+     * Returns the second virial coefficients at the given temperature.
+     * The coefficients of the first temperature of a calculation are
+     * published in the cache, as all the calculations of an isothermal
+     * sweep start from the same one. The temperatures which follow, as in
+     * the iterations of BUBL T and DEW T, are calculated into the buffers
+     * of the workspace, so that the iterations do not allocate memory.
+     */
+    private Coefficients getCoefficients(double T, Workspace ws)
+    {
+        Coefficients coefs = ws.coefs;
+
+        if ((coefs != null) && (coefs.T == T))
+            return coefs;
+
+        coefs = cache;
+
+        if ((coefs == null) || (coefs.T != T))
+        {
+            if (ws.coefs == null)
             {
-                bo[i][j] = VIR_COEF_OA - VIR_COEF_OB / Math.pow((T + Constants.K_C_DIFF) / Tc[i][j], VIR_COEF_OC);
-                bi[i][j] = VIR_COEF_IA - VIR_COEF_IB / Math.pow((T + Constants.K_C_DIFF) / Tc[i][j], VIR_COEF_IC);
-                cb[i][j] = (Constants.R_J_PER_KMOL_K * Tc[i][j] / Pc[i][j]) * (bo[i][j] + omega[i][j] * bi[i][j]);
+                coefs = new Coefficients(numOfComps);
+                calculateCoefficients(T, coefs);
+                cache = coefs;
+            }
+            else
+            {
+                if (ws.ownCoefs == null)
+                    ws.ownCoefs = new Coefficients(numOfComps);
+
+                coefs = ws.ownCoefs;
+                calculateCoefficients(T, coefs);
             }
         }
 
-        for(i = 0; i < numOfComps; i++)
-            for(j = 0; j < numOfComps; j++)
-                del[i][j] = 2 * cb[i][j] - cb[i][i] - cb[j][j];
+        ws.coefs = coefs;
+        return coefs;
+    }
 
-        for(i = 0; i < numOfComps; i++)
+    /**
+     * Calculates the second virial coefficients of all pairs at the given
+     * temperature, with their temperature derivatives.
+     */
+    private void calculateCoefficients(double T, Coefficients coefs)
+    {
+        int i = 0;
+        int j = 0;
+        int ij = 0;
+        double bo = 0;
+        double bi = 0;
+        double boTerm = 0;
+        double biTerm = 0;
+
+        for(ij = 0; ij < numOfComps * numOfComps; ij++)
         {
-            double sum = 0;
+            boTerm = VIR_COEF_OB / Math.pow((T + Constants.K_C_DIFF) / Tc[ij], VIR_COEF_OC);
+            biTerm = VIR_COEF_IB / Math.pow((T + Constants.K_C_DIFF) / Tc[ij], VIR_COEF_IC);
+            bo = VIR_COEF_OA - boTerm;
+            bi = VIR_COEF_IA - biTerm;
+            coefs.cb[ij] = RTcPc[ij] * (bo + omega[ij] * bi);
+            coefs.dcb[ij] = RTcPc[ij] * (VIR_COEF_OC * boTerm + omega[ij] * VIR_COEF_IC * biTerm)
+                / (T + Constants.K_C_DIFF);
+        }
 
-            for(j = 0; j < numOfComps; j++)
+        for(i = 0; i < numOfComps; i++)
+            for(j = i; j < numOfComps; j++)
             {
-                for(k = 0; k < numOfComps; k++)
-                {
-                    sum += vapMoleFracs[j] * vapMoleFracs[k] * (2 * del[j][i] - del[j][k]);
-                }
+                // Computed once for both orders, so that del is exactly symmetric
+                coefs.del[i * numOfComps + j] = 2 * coefs.cb[i * numOfComps + j]
+                    - coefs.cb[i * numOfComps + i] - coefs.cb[j * numOfComps + j];
+                coefs.ddel[i * numOfComps + j] = 2 * coefs.dcb[i * numOfComps + j]
+                    - coefs.dcb[i * numOfComps + i] - coefs.dcb[j * numOfComps + j];
+                coefs.del[j * numOfComps + i] = coefs.del[i * numOfComps + j];
+                coefs.ddel[j * numOfComps + i] = coefs.ddel[i * numOfComps + j];
             }
 
-            phi[i] = Math.exp((cb[i][i] * (P - Psat[i]) + P / 2 * sum) / (Constants.R_J_PER_KMOL_K * (T + Constants.K_C_DIFF)));
+        coefs.T = T;
+    }
+
+    /**
+     * Second virial coefficients of all pairs at one temperature, with
+     * their temperature derivatives. The object is not changed after it
+     * is published in the cache; the one owned by a workspace is
+     * calculated again for every new temperature.
+     */
+    private static class Coefficients
+    {
+        double T = Double.NaN;
+        final double[] cb;
+        final double[] del;
+        final double[] dcb;
+        final double[] ddel;
+
+        Coefficients(int numOfComps)
+        {
+            this.cb = new double[numOfComps * numOfComps];
+            this.del = new double[numOfComps * numOfComps];
+            this.dcb = new double[numOfComps * numOfComps];
+            this.ddel = new double[numOfComps * numOfComps];
         }
+    }
 
-        return phi;
+    /**
+     * Products of del and of its temperature derivative with the
+     * mole fractions, the coefficients of the current temperature and the
+     * arrays for the batch calculations, which grow to the largest block
+     * seen. The coefficients are either shared ones from the cache, or
+     * ownCoefs, which are made when the temperature first changes.
+     */
+    private static class Workspace
+    {
+        final double[] delY;
+        final double[] dDelY;
+        Coefficients coefs = null;
+        Coefficients ownCoefs = null;
+        double[] batchDelY = null;
+        double[] batchYDelY = null;
+        double[] batchSumY = null;
+
+        Workspace(int numOfComps)
+        {
+            this.delY = new double[numOfComps];
+            this.dDelY = new double[numOfComps];
+        }
+
+        void ensureBatchSize(int count)
+        {
+            if ((batchYDelY != null) && (batchYDelY.length >= count))
+                return;
+
+            batchDelY = new double[delY.length * count];
+            batchYDelY = new double[count];
+            batchSumY = new double[count];
+        }
     }
 }
@@ -0,0 +1,204 @@
+/*
+ * Wilson's equation implementation for activity calculation.
+ *
+ * Author: Samir Vaidya (mailto: syvaidya@yahoo.com)
+ * Copyright (c) Samir Vaidya
+ */
+
+package net.sourceforge.vlejava.vle.calc;
+
+import java.util.*;
+import net.sourceforge.vlejava.vle.*;
+
+/**
+ * Wilson's equation implementation for activity calculation, for any
+ * number of components. The parameters are the energies a(i, j) in J/mol
+ * and the liquid molar volumes v(i), with
+ * Lambda(i, j) = v(j) / v(i) exp(-a(i, j) / RT). The Lambda matrix is kept
+ * for the last temperature and parameter array, so the parameter array
+ * must not be changed after it is handed to the calculator.
+ */
+public class WilsonActivityCalculator implements IBufferedActivityCalculator
+{
+    private VLEContext context = null;
+    private MixingKernel kernel = null;
+    private int numOfComps = 0;
+
+    // Lambda matrix of the last temperature a calculation started from,
+    // shared by all callers
+    private volatile Lambda cache = null;
+
+    public void setContext(VLEContext context)
+    {
+        this.context = context;
+        kernel = MixingKernel.getInstance();
+        numOfComps = context.getNumOfComps();
+        cache = null;
+    }
+
+    public double[] calculateActivity(Object[] params)
+    {
+        return calculateActivity(context.getTemperature(), context.getLiquidMoleFractions(), params);
+    }
+
+    public double[] calculateActivity(double T, double[] x, Object[] params)
+    {
+        double[] gamma = new double[numOfComps];
+
+        calculateActivity(T, x, params, gamma, createWorkspace());
+        return gamma;
+    }
+
+    /**
+     * Returns the arrays for the sums over the mole fractions, and for
+     * the Lambda matrices of the temperatures after the first.
+     */
+    public Object createWorkspace()
+    {
+        return new Workspace(numOfComps);
+    }
+
+    /**
+     * Calculates the activity coefficients with
+     * ln gamma(i) = 1 - ln S(i) - sum over k of x(k) Lambda(k, i) / S(k),
+     * where S(k) = sum over j of x(j) Lambda(k, j). S is computed once for
+     * all components, so that a call takes O(n^2) operations.
+     */
+    public void calculateActivity(double T, double[] x, Object[] params, double[] gamma,
+        Object workspace)
+    {
+        int i = 0;
+        double[] S = ((Workspace) workspace).S;
+        double[] xByS = ((Workspace) workspace).xByS;
+        Lambda lambda = getLambda(T, params, (Workspace) workspace);
+
+        kernel.multiply(lambda.lambda, x, S, numOfComps);
+
+        for (i = 0; i < numOfComps; i++)
+            xByS[i] = x[i] / S[i];
+
+        for (i = 0; i < numOfComps; i++)
+            gamma[i] = Math.exp(1 - Math.log(S[i])
+                - kernel.dot(lambda.lambdaT, i * numOfComps, xByS, numOfComps));
+    }
+
+    /**
+     * Returns the Lambda matrix of the given temperature and parameters.
+     * The matrix of the first temperature of a calculation is published
+     * in the cache, as all the calculations of an isothermal sweep start
+     * from the same one. The temperatures which follow, as in the
+     * iterations of BUBL T and DEW T, are calculated into the buffers of
+     * the workspace, so that the iterations do not allocate memory.
+     */
+    private Lambda getLambda(double T, Object[] params, Workspace ws)
+    {
+        Lambda lambda = ws.lambda;
+
+        if ((lambda != null) && (lambda.T == T) && (lambda.params == params))
+            return lambda;
+
+        lambda = cache;
+
+        if ((lambda == null) || (lambda.T != T) || (lambda.params != params))
+        {
+            if (ws.lambda == null)
+            {
+                lambda = new Lambda(numOfComps);
+                calculateLambda(T, params, lambda, ws.a);
+                cache = lambda;
+            }
+            else
+            {
+                if (ws.ownLambda == null)
+                    ws.ownLambda = new Lambda(numOfComps);
+
+                lambda = ws.ownLambda;
+                calculateLambda(T, params, lambda, ws.a);
+            }
+        }
+
+        ws.lambda = lambda;
+        return lambda;
+    }
+
+    /**
+     * Calculates the Lambda matrix of the given temperature and parameters.
+     * @param a Array for the energy parameters
+     */
+    private void calculateLambda(double T, Object[] params, Lambda lambda, double[] a)
+    {
+        int i = 0;
+        int j = 0;
+        int index = ActivityParams.readPairs(params, 0, numOfComps, a);
+        double RT = Constants.R_J_PER_MOL_K * (T + Constants.K_C_DIFF);
+
+        for (i = 0; i < numOfComps; i++)
+        {
+            for (j = 0; j < numOfComps; j++)
+            {
+                lambda.lambda[i * numOfComps + j] = ActivityParams.get(params, index + j)
+                    / ActivityParams.get(params, index + i) * Math.exp(-a[i * numOfComps + j] / RT);
+                lambda.lambdaT[j * numOfComps + i] = lambda.lambda[i * numOfComps + j];
+            }
+        }
+
+        lambda.T = T;
+        lambda.params = params;
+    }
+
+    public ArrayList getParamList(int numOfComps)
+    {
+        ArrayList paramList = new ArrayList();
+
+        ActivityParams.addPairNames(paramList, "Wilson-a", numOfComps);
+        ActivityParams.addComponentNames(paramList, "Wilson-v", numOfComps);
+
+        return paramList;
+    }
+
+    public boolean isNonBinarySystemAllowed()
+    {
+        return true;
+    }
+
+    /**
+     * Lambda matrix and its transpose at one temperature. The object is
+     * not changed after it is published in the cache; the one owned by a
+     * workspace is calculated again for every new temperature.
+     */
+    private static class Lambda
+    {
+        double T = Double.NaN;
+        Object[] params = null;
+        final double[] lambda;
+        final double[] lambdaT;
+
+        Lambda(int numOfComps)
+        {
+            this.lambda = new double[numOfComps * numOfComps];
+            this.lambdaT = new double[numOfComps * numOfComps];
+        }
+    }
+
+    /**
+     * The sums S(k) and the ratios x(k) / S(k) of one call, the energy
+     * parameters and the Lambda matrix of the current temperature. The
+     * matrix is either a shared one from the cache, or ownLambda, which
+     * is made when the temperature first changes.
+     */
+    private static class Workspace
+    {
+        final double[] S;
+        final double[] xByS;
+        final double[] a;
+        Lambda lambda = null;
+        Lambda ownLambda = null;
+
+        Workspace(int numOfComps)
+        {
+            this.S = new double[numOfComps];
+            this.xByS = new double[numOfComps];
+            this.a = new double[numOfComps * numOfComps];
+        }
+    }
+}